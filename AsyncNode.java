@@ -0,0 +1,147 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/* Asynchronous view of a Node. Over the NIO transport requests are pipelined on the shared connection and
+   complete out of order without holding a thread; RMI has no async calls, so there the blocking call runs
+   on a bounded executor instead of a thread per request. */
+
+public class AsyncNode {
+    private static final int DEFAULT_RMI_CALLERS = 32;
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newFixedThreadPool(DEFAULT_RMI_CALLERS, r -> {
+        Thread t = new Thread(r, "async-node-caller");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final Method LOOKUP = method("lookup", String.class);
+    private static final Method INSERT = method("insert", String.class, String.class);
+    private static final Method FIND_SUCCESSOR = method("findSuccessor", int.class);
+    private static final Method REMOVE = method("remove", String.class);
+    private static final Method INSERT_ALL = method("insertAll", HashedEntries.class);
+    private static final Method NEXT_HOP = method("nextHop", int.class);
+    private static final Method UPDATE_FINGER_TABLE = method("updateFingerTable", NodeRef.class, int.class);
+    private static final Method GET_ID = method("getID");
+    private static final Method REPLACE_FINGER = method("replaceFinger", NodeRef.class, NodeRef.class);
+    private static final Method LOOKUP_LOCAL = method("lookupLocal", List.class);
+    private static final Method LOOKUP_IF_REPLICA = method("lookupIfReplica", HashedKey.class);
+    private static final Method STORE_REPLICAS = method("storeReplicas", HashedEntries.class);
+    private static final Method REMOVE_REPLICA = method("removeReplica", HashedKey.class);
+    private static final Method INVALIDATE = method("invalidate", List.class);
+    private static final Method GET_STATE = method("getState");
+    private static final Method SCAN_RANGE = method("scanRange", int.class, int.class, String.class, int.class);
+
+    private final Node node;
+    private final Executor blockingCalls;
+
+    private AsyncNode(Node node, Executor blockingCalls) {
+        this.node = node;
+        this.blockingCalls = blockingCalls;
+    }
+
+    public static AsyncNode of(Node node) {
+        return new AsyncNode(node, DEFAULT_EXECUTOR);
+    }
+
+    public static AsyncNode of(Node node, Executor blockingCalls) {
+        return new AsyncNode(node, blockingCalls);
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public CompletableFuture<String> lookup(String word) {
+        return call(LOOKUP, word);
+    }
+
+    public CompletableFuture<Node> insert(String word, String definition) {
+        return call(INSERT, word, definition);
+    }
+
+    public CompletableFuture<Node> findSuccessor(int key) {
+        return call(FIND_SUCCESSOR, key);
+    }
+
+    public CompletableFuture<Boolean> remove(String word) {
+        return call(REMOVE, word);
+    }
+
+    public CompletableFuture<Integer> insertAll(HashedEntries entries) {
+        return call(INSERT_ALL, entries);
+    }
+
+    public CompletableFuture<RouteHop> nextHop(int key) {
+        return call(NEXT_HOP, key);
+    }
+
+    public CompletableFuture<Void> updateFingerTable(NodeRef s, int i) {
+        return call(UPDATE_FINGER_TABLE, s, i);
+    }
+
+    public CompletableFuture<Integer> getID() {
+        return call(GET_ID);
+    }
+
+    public CompletableFuture<Void> replaceFinger(NodeRef leaving, NodeRef replacement) {
+        return call(REPLACE_FINGER, leaving, replacement);
+    }
+
+    public CompletableFuture<List<String>> lookupLocal(List<String> words) {
+        return call(LOOKUP_LOCAL, words);
+    }
+
+    public CompletableFuture<OwnedResult> lookupIfReplica(HashedKey key) {
+        return call(LOOKUP_IF_REPLICA, key);
+    }
+
+    public CompletableFuture<Void> storeReplicas(HashedEntries entries) {
+        return call(STORE_REPLICAS, entries);
+    }
+
+    public CompletableFuture<Boolean> removeReplica(HashedKey key) {
+        return call(REMOVE_REPLICA, key);
+    }
+
+    public CompletableFuture<Void> invalidate(List<String> words) {
+        return call(INVALIDATE, words);
+    }
+
+    public CompletableFuture<NodeState> getState() {
+        return call(GET_STATE);
+    }
+
+    public CompletableFuture<ScanPage> scanRange(int after, int end, String prefix, int limit) {
+        return call(SCAN_RANGE, after, end, prefix, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> call(Method method, Object... args) {
+        if (NioTransport.isNioNode(node)) {
+            return (CompletableFuture<T>) NioTransport.shared().invokeAsync(node, method, args);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return (T) method.invoke(node, args);
+            } catch (InvocationTargetException e) {
+                throw new CompletionException(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new CompletionException(new RemoteException("Cannot call " + method.getName(), e));
+            }
+        }, blockingCalls);
+    }
+
+    private static Method method(String name, Class<?>... parameterTypes) {
+        try {
+            return Node.class.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
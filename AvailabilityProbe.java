@@ -0,0 +1,94 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Loads its own words into a running ring, then reads them back from several threads and prints, once a
+   second, how many reads succeeded, failed or came back empty and their p50/p99 latency. kill_node_test.sh
+   kills a node while this runs, so the seconds around the kill show what replication keeps available. */
+
+public class AvailabilityProbe {
+    private static final int MAX_SAMPLES_PER_SECOND = 1 << 16;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: java AvailabilityProbe <nodeURL> <replicas> <one|quorum|all> <seconds> [words] [threads]");
+            return;
+        }
+        int replicas = Integer.parseInt(args[1]);
+        ConsistencyLevel consistency = ConsistencyLevel.valueOf(args[2].toUpperCase());
+        int seconds = Integer.parseInt(args[3]);
+        int words = args.length > 4 ? Integer.parseInt(args[4]) : 10_000;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+
+        RingClient ring = new RingClient(Transports.lookup(args[0]));
+        ring.setReplication(replicas, consistency);
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < words; i++) {
+            entries.put("probe-word-" + i, "probe definition " + i);
+        }
+        ring.insertAll(entries);
+        System.out.printf("Loaded %d words into a ring of %d nodes, reading with R=%d at %s%n",
+                words, ring.getRingSize(), replicas, consistency);
+
+        AtomicLongArray ok = new AtomicLongArray(seconds);
+        AtomicLongArray failed = new AtomicLongArray(seconds);
+        AtomicLongArray missing = new AtomicLongArray(seconds);
+        long[][] latencies = new long[seconds][MAX_SAMPLES_PER_SECOND];
+        long begin = System.nanoTime();
+        Thread[] readers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            readers[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                while (true) {
+                    int i = random.nextInt(words);
+                    long start = System.nanoTime();
+                    int second = (int) ((start - begin) / 1_000_000_000L);
+                    if (second >= seconds) {
+                        return;
+                    }
+                    try {
+                        String definition = ring.lookup("probe-word-" + i);
+                        long index = ok.getAndIncrement(second);
+                        if (index < MAX_SAMPLES_PER_SECOND) {
+                            latencies[second][(int) index] = System.nanoTime() - start;  // Slots are unique, races only lose samples past the cap
+                        }
+                        if (!("probe definition " + i).equals(definition)) {
+                            missing.incrementAndGet(second);
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet(second);
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        long totalOk = 0;
+        long totalFailed = 0;
+        long totalMissing = 0;
+        System.out.printf("%-6s %-8s %-8s %-8s %-10s %-10s%n", "second", "ok", "failed", "missing", "p50 ms", "p99 ms");
+        for (int s = 0; s < seconds; s++) {
+            int samples = (int) Math.min(ok.get(s), MAX_SAMPLES_PER_SECOND);
+            long[] sorted = Arrays.copyOf(latencies[s], samples);
+            Arrays.sort(sorted);
+            System.out.printf("%-6d %-8d %-8d %-8d %-10.2f %-10.2f%n", s, ok.get(s), failed.get(s), missing.get(s),
+                    percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6);
+            totalOk += ok.get(s);
+            totalFailed += failed.get(s);
+            totalMissing += missing.get(s);
+        }
+        System.out.printf("Availability: %.3f%% of %d reads answered, %d of them without the expected definition%n",
+                100.0 * totalOk / Math.max(1, totalOk + totalFailed), totalOk + totalFailed, totalMissing);
+        System.exit(0);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
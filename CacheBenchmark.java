@@ -0,0 +1,129 @@
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Starts an in-process ring over RMI, loads words and runs a Zipf-skewed mix of lookups and a few writes
+   through random nodes, first with the read cache off and then on. Prints throughput, latency and the
+   cache counters, then rewrites the hottest words and checks that no node still serves an old copy. */
+
+public class CacheBenchmark {
+    private static final int MAX_SAMPLES_PER_THREAD = 1 << 20;
+    private static final int HOT_WORDS_CHECKED = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java CacheBenchmark <nodes> <words> <seconds> [threads] [zipfExponent] [writePercent] [cacheEntries] [registryPort]");
+            return;
+        }
+        int nodes = Integer.parseInt(args[0]);
+        int words = Integer.parseInt(args[1]);
+        int seconds = Integer.parseInt(args[2]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        double exponent = args.length > 4 ? Double.parseDouble(args[4]) : 0.99;
+        double writePercent = args.length > 5 ? Double.parseDouble(args[5]) : 1.0;
+        int cacheEntries = args.length > 6 ? Integer.parseInt(args[6]) : 10_000;
+        int port = args.length > 7 ? Integer.parseInt(args[7]) : 1099;
+
+        LocateRegistry.createRegistry(port);
+        Registry registry = LocateRegistry.getRegistry(port);  // A stub, so nodes get each other's stubs and calls are real RPCs
+        List<NodeImpl> ring = new ArrayList<>();
+        List<Node> entries = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            String url = "Node" + i;
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+            registry.rebind(url, node);
+            node.join(i == 0 ? null : (Node) registry.lookup("Node0"));
+            ring.add(node);
+            entries.add((Node) registry.lookup(url));
+        }
+        Map<String, String> batch = new LinkedHashMap<>();
+        for (int i = 0; i < words; i++) {
+            batch.put("word-" + i, "definition " + i);
+        }
+        entries.get(0).insertAll(batch);
+        System.out.printf("%d nodes, %d words, %d threads, Zipf exponent %.2f, %.1f%% writes%n", nodes, words, threads, exponent, writePercent);
+
+        ZipfGenerator zipf = new ZipfGenerator(words, exponent);
+        for (boolean cached : new boolean[]{false, true}) {
+            for (NodeImpl node : ring) {
+                node.setReadCache(cached ? cacheEntries : 0, 30_000);
+            }
+            run(cached ? "cache on" : "cache off", entries, zipf, seconds, threads, writePercent);
+            if (cached) {
+                CacheStats total = new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0);
+                for (NodeImpl node : ring) {
+                    total = total.plus(node.getCacheStats());
+                }
+                System.out.println("  " + total);
+            }
+        }
+
+        int stale = 0;
+        for (int i = 0; i < HOT_WORDS_CHECKED; i++) {
+            entries.get(i % nodes).insert("word-" + i, "rewritten " + i);
+            for (Node entry : entries) {
+                if (!("rewritten " + i).equals(entry.lookup("word-" + i))) {
+                    stale++;
+                }
+            }
+        }
+        System.out.printf("After rewriting the %d hottest words: %d stale reads out of %d%n",
+                HOT_WORDS_CHECKED, stale, HOT_WORDS_CHECKED * nodes);
+        System.exit(0);
+    }
+
+    private static void run(String label, List<Node> entries, ZipfGenerator zipf, int seconds, int threads,
+                            double writePercent) throws InterruptedException {
+        AtomicLong writes = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long[][] latencies = new long[threads][MAX_SAMPLES_PER_THREAD];
+        int[] counts = new int[threads];
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(worker);
+                while (System.nanoTime() < deadline) {
+                    String word = "word-" + zipf.next(random);
+                    Node entry = entries.get(random.nextInt(entries.size()));
+                    long start = System.nanoTime();
+                    try {
+                        if (random.nextDouble() * 100 < writePercent) {
+                            entry.insert(word, "definition " + word + " v" + writes.incrementAndGet());
+                        } else {
+                            entry.lookup(word);
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                    if (counts[worker] < MAX_SAMPLES_PER_THREAD) {
+                        latencies[worker][counts[worker]++] = System.nanoTime() - start;
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        int total = 0;
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total += counts[t];
+        }
+        long[] all = new long[total];
+        int next = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(latencies[t], 0, all, next, counts[t]);
+            next += counts[t];
+        }
+        Arrays.sort(all);
+        System.out.printf("%-10s %8.0f ops/s  p50 %.3f ms  p99 %.3f ms  %d writes  %d failed%n", label, (double) total / seconds,
+                all.length == 0 ? 0 : all[all.length / 2] / 1e6, all.length == 0 ? 0 : all[(int) (all.length * 0.99)] / 1e6,
+                writes.get(), failures.get());
+    }
+}
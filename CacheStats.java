@@ -0,0 +1,85 @@
+import java.io.Serializable;
+
+// Snapshot of a node's read cache: definition hits and misses, entries evicted for space, expired or invalidated
+// by their owner, location cache hits and misses, and the current size and estimated heap use
+public class CacheStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long invalidations;
+    private final long locationHits;
+    private final long locationMisses;
+    private final long entries;
+    private final long bytes;
+
+    public CacheStats(long hits, long misses, long evictions, long expirations, long invalidations,
+                      long locationHits, long locationMisses, long entries, long bytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.invalidations = invalidations;
+        this.locationHits = locationHits;
+        this.locationMisses = locationMisses;
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getExpirations() {
+        return expirations;
+    }
+
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public long getLocationHits() {
+        return locationHits;
+    }
+
+    public long getLocationMisses() {
+        return locationMisses;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double hitRate() {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    public double locationHitRate() {
+        return locationHits + locationMisses == 0 ? 0.0 : (double) locationHits / (locationHits + locationMisses);
+    }
+
+    public CacheStats plus(CacheStats other) {
+        return new CacheStats(hits + other.hits, misses + other.misses, evictions + other.evictions,
+                expirations + other.expirations, invalidations + other.invalidations, locationHits + other.locationHits,
+                locationMisses + other.locationMisses, entries + other.entries, bytes + other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hitRate=%.1f%% hits=%d misses=%d evictions=%d expirations=%d invalidations=%d locationHitRate=%.1f%% entries=%d bytes=%d",
+                100 * hitRate(), hits, misses, evictions, expirations, invalidations, 100 * locationHitRate(), entries, bytes);
+    }
+}
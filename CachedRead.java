@@ -0,0 +1,34 @@
+import java.io.Serializable;
+
+// Reply to readForCache: the definition, the owner's range (rangeStart, owner id] for the reader's location cache,
+// and whether the owner will invalidate the reader's copy on the next write (it tracks a bounded number of words)
+public class CachedRead implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final boolean owner;
+    private final String definition;
+    private final int rangeStart;
+    private final boolean cacheable;
+
+    public CachedRead(boolean owner, String definition, int rangeStart, boolean cacheable) {
+        this.owner = owner;
+        this.definition = definition;
+        this.rangeStart = rangeStart;
+        this.cacheable = cacheable;
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public int getRangeStart() {
+        return rangeStart;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+}
@@ -0,0 +1,119 @@
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* Starts an in-process ring over RMI and has threads increment a few shared counter words through random
+   nodes for a while, three ways: a blind read then write, which loses increments under contention; a
+   read then compareAndSet retried on a version mismatch; and a read then write under a lock per counter in
+   this process, the best a client can do without conditional writes and only possible when every writer
+   shares it. Prints throughput, retries and how many increments each way lost. */
+
+public class CasBenchmark {
+    private interface Increment {
+        void apply(Node node, String word) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java CasBenchmark <nodes> <counters> [seconds] [threads] [registryPort]");
+            return;
+        }
+        int nodes = Integer.parseInt(args[0]);
+        int counters = Integer.parseInt(args[1]);
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : 1099;
+
+        LocateRegistry.createRegistry(port);
+        Registry registry = LocateRegistry.getRegistry(port);
+        List<Node> entries = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            String url = "Node" + i;
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+            registry.rebind(url, node);
+            node.join(i == 0 ? null : (Node) registry.lookup("Node0"));
+            entries.add((Node) registry.lookup(url));
+        }
+        System.out.printf("%d nodes, %d counters, %d threads, %d s per mode%n", nodes, counters, threads, seconds);
+
+        LongAdder retries = new LongAdder();
+        run("blind", entries, counters, seconds, threads, retries, (node, word) ->
+                node.insert(word, Long.toString(parse(node.lookup(word)) + 1)));
+
+        run("cas", entries, counters, seconds, threads, retries, (node, word) -> {
+            VersionedValue current = node.lookupVersioned(word);
+            while (true) {
+                CasResult result = node.compareAndSet(word, current.getVersion(), Long.toString(parse(current.getDefinition()) + 1));
+                if (result.isApplied()) {
+                    return;
+                }
+                retries.increment();
+                current = result.getCurrent();
+            }
+        });
+
+        ReentrantLock[] locks = new ReentrantLock[counters];
+        for (int i = 0; i < counters; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        run("lock", entries, counters, seconds, threads, retries, (node, word) -> {
+            ReentrantLock lock = locks[Integer.parseInt(word.substring(word.indexOf('-') + 1))];
+            lock.lock();
+            try {
+                node.insert(word, Long.toString(parse(node.lookup(word)) + 1));
+            } finally {
+                lock.unlock();
+            }
+        });
+        System.exit(0);
+    }
+
+    private static void run(String mode, List<Node> entries, int counters, int seconds, int threads, LongAdder retries,
+                            Increment increment) throws Exception {
+        String prefix = mode + "-";
+        for (int i = 0; i < counters; i++) {
+            entries.get(0).insert(prefix + i, "0");
+        }
+        retries.reset();
+        LongAdder done = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    try {
+                        increment.apply(entries.get(random.nextInt(entries.size())), prefix + random.nextInt(counters));
+                        done.increment();
+                    } catch (Exception e) {
+                        failed.increment();
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long total = 0;
+        for (int i = 0; i < counters; i++) {
+            total += parse(entries.get(0).lookup(prefix + i));
+        }
+        System.out.printf("%-6s %8.0f increments/s, %d increments, %d retries, %d failed calls, %d lost%n", mode,
+                done.sum() / (double) seconds, done.sum(), retries.sum(), failed.sum(), done.sum() - total);
+    }
+
+    private static long parse(String definition) {
+        try {
+            return Long.parseLong(definition);
+        } catch (NumberFormatException e) {
+            return 0;  // "Definition not found." or absent
+        }
+    }
+}
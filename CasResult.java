@@ -0,0 +1,31 @@
+import java.io.Serializable;
+
+// Outcome of a conditional write: whether it was applied, and the word's definition and version afterwards.
+// On a mismatch that is what the caller has to base its next attempt on, so it does not need to read again.
+public class CasResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final boolean applied;
+    private final VersionedValue current;
+
+    public CasResult(boolean applied, VersionedValue current) {
+        this.applied = applied;
+        this.current = current;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public VersionedValue getCurrent() {
+        return current;
+    }
+
+    public long getVersion() {
+        return current.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return (applied ? "applied, now " : "not applied, still ") + current;
+    }
+}
@@ -1,5 +1,6 @@
-import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 public class Client {
@@ -9,11 +10,12 @@ public class Client {
             return;
         }
 
-        Node node = null;
+        RingClient ring = null;
         try {
-            String nodeURL = "rmi://localhost/" + args[0];
-            node = (Node) Naming.lookup(nodeURL);
-            System.out.println("Connected to node at " + nodeURL);
+            String nodeURL = args[0].startsWith(NioTransport.SCHEME) ? args[0] : "rmi://localhost/" + args[0];
+            Node node = Transports.lookup(nodeURL);
+            ring = new RingClient(node);  // Resolve owners locally and talk to them directly
+            System.out.println("Connected to node at " + nodeURL + ", ring has " + ring.getRingSize() + " nodes");
         } catch (Exception e) {
             System.err.println("Client error: Unable to connect to the node at " + args[0]);
             e.printStackTrace();
@@ -22,7 +24,7 @@ public class Client {
 
         try (Scanner scanner = new Scanner(System.in)) {
             while (true) {
-                System.out.println("Enter 1 to lookup, 2 to insert, or 3 to exit:");
+                System.out.println("Enter 1 to lookup, 2 to insert, 3 to exit, or 4 to lookup several words:");
                 int choice = scanner.nextInt();
                 scanner.nextLine(); // Consume the newline
 
@@ -30,7 +32,7 @@ public class Client {
                     case 1:
                         System.out.println("Enter a word:");
                         String word = scanner.nextLine();
-                        String definition = node.lookup(word);
+                        String definition = ring.lookup(word);
                         System.out.println("Definition: " + definition);
                         break;
                     case 2:
@@ -38,12 +40,20 @@ public class Client {
                         word = scanner.nextLine();
                         System.out.println("Enter the definition:");
                         definition = scanner.nextLine();
-                        node.insert(word, definition);
+                        ring.insert(word, definition);
                         System.out.println("Inserted.");
                         break;
                     case 3:
                         System.out.println("Exiting...");
                         return;
+                    case 4:
+                        System.out.println("Enter words separated by spaces:");
+                        List<String> words = Arrays.asList(scanner.nextLine().trim().split("\\s+"));
+                        List<String> definitions = ring.lookupAll(words);
+                        for (int i = 0; i < words.size(); i++) {
+                            System.out.println(words.get(i) + ": " + definitions.get(i));
+                        }
+                        break;
                     default:
                         System.out.println("Invalid choice.");
                         break;
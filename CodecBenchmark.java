@@ -0,0 +1,183 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/* Scales the sample dictionary up to millions of entries (its definitions repeated under numbered words) and
+   compares plain UTF-8 with a ValueCodec trained on the file: the compression ratio on definitions held out of
+   training, encode and decode cost per value, bytes per entry of setDictionaryAll batches on the NIO wire (and
+   under Java serialization, as RMI sends them), and heap or direct memory per entry in both shard stores.
+   Give it room, e.g. java -Xmx3g; each store is filled, measured and dropped in turn. */
+
+public class CodecBenchmark {
+    private static final int BATCH = 1000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java CodecBenchmark <dictionaryFile> [entries]");
+            return;
+        }
+        List<String> words = new ArrayList<>();
+        List<String> definitions = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                words.add(line.substring(0, colon).trim());
+                definitions.add(line.substring(colon + 1).trim());
+            }
+        }
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        // Held out: train on every other definition, measure on the rest
+        List<String> trainHalf = new ArrayList<>();
+        List<String> testHalf = new ArrayList<>();
+        for (int i = 0; i < definitions.size(); i++) {
+            (i % 2 == 0 ? trainHalf : testHalf).add(definitions.get(i));
+        }
+        System.out.printf("%d sample definitions, %.1f UTF-8 bytes on average%n", definitions.size(), averageBytes(definitions));
+        System.out.printf("held out: trained on %d, ratio %.2f on the other %d%n", trainHalf.size(),
+                ratio(ValueCodec.train(trainHalf), testHalf), testHalf.size());
+
+        long start = System.nanoTime();
+        ValueCodec codec = ValueCodec.fromDictionaryFile(Paths.get(args[0]));
+        System.out.printf("trained on the whole file: %d fragments in %.0f ms, ratio %.2f%n", codec.size(),
+                (System.nanoTime() - start) / 1e6, ratio(codec, definitions));
+
+        String[] scaledWords = new String[entries];
+        String[] scaledDefinitions = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            scaledWords[i] = words.get(i % words.size()) + "-" + i;
+            scaledDefinitions[i] = new String(definitions.get(i % definitions.size()));  // Distinct, as serialization sends repeats as back-references
+        }
+        System.out.printf("%n%d entries%n", entries);
+        cpu(codec, scaledDefinitions);
+        wire(ValueCodec.PLAIN, scaledWords, scaledDefinitions);
+        wire(codec, scaledWords, scaledDefinitions);
+        serialized(scaledWords, scaledDefinitions);
+        heap("map", new MapShardStore(ValueCodec.PLAIN), "plain", scaledWords, scaledDefinitions);
+        heap("map", new MapShardStore(codec), "codec", scaledWords, scaledDefinitions);
+        heap("offheap", new OffHeapShardStore(ValueCodec.PLAIN), "plain", scaledWords, scaledDefinitions);
+        heap("offheap", new OffHeapShardStore(codec), "codec", scaledWords, scaledDefinitions);
+    }
+
+    private static double averageBytes(List<String> values) {
+        long total = 0;
+        for (String value : values) {
+            total += value.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return (double) total / values.size();
+    }
+
+    private static double ratio(ValueCodec codec, List<String> values) {
+        long plain = 0;
+        long encoded = 0;
+        for (String value : values) {
+            plain += value.getBytes(StandardCharsets.UTF_8).length;
+            encoded += codec.encode(value).length;
+        }
+        return (double) encoded / plain;
+    }
+
+    // Best of five passes over every value, so the JIT has settled
+    private static void cpu(ValueCodec codec, String[] definitions) {
+        byte[][] encoded = new byte[definitions.length][];
+        double encodeNanos = Double.MAX_VALUE;
+        double decodeNanos = Double.MAX_VALUE;
+        double plainEncodeNanos = Double.MAX_VALUE;
+        double plainDecodeNanos = Double.MAX_VALUE;
+        long sink = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < definitions.length; i++) {
+                encoded[i] = codec.encode(definitions[i]);
+            }
+            encodeNanos = Math.min(encodeNanos, (System.nanoTime() - start) / (double) definitions.length);
+            start = System.nanoTime();
+            for (byte[] value : encoded) {
+                sink += codec.decode(value).length();
+            }
+            decodeNanos = Math.min(decodeNanos, (System.nanoTime() - start) / (double) definitions.length);
+            start = System.nanoTime();
+            for (int i = 0; i < definitions.length; i++) {
+                encoded[i] = definitions[i].getBytes(StandardCharsets.UTF_8);
+            }
+            plainEncodeNanos = Math.min(plainEncodeNanos, (System.nanoTime() - start) / (double) definitions.length);
+            start = System.nanoTime();
+            for (byte[] value : encoded) {
+                sink += new String(value, StandardCharsets.UTF_8).length();
+            }
+            plainDecodeNanos = Math.min(plainDecodeNanos, (System.nanoTime() - start) / (double) definitions.length);
+        }
+        System.out.printf("cpu: codec encode %.0f ns, decode %.0f ns per value; UTF-8 %.0f ns and %.0f ns (%d)%n",
+                encodeNanos, decodeNanos, plainEncodeNanos, plainDecodeNanos, sink % 10);
+    }
+
+    // setDictionaryAll arguments as the NIO transport frames them, BATCH entries per call
+    private static void wire(ValueCodec codec, String[] words, String[] definitions) throws Exception {
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int from = 0; from < words.length; from += BATCH) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            WireProtocol.writeValue(new DataOutputStream(buffer), HashedEntries.class, batch(words, definitions, from), codec);
+            bytes += buffer.size();
+        }
+        System.out.printf("wire %-6s %.1f bytes/entry, %.0f ns/entry to encode%n", codec == ValueCodec.PLAIN ? "plain" : "codec",
+                (double) bytes / words.length, (System.nanoTime() - start) / (double) words.length);
+    }
+
+    private static void serialized(String[] words, String[] definitions) throws Exception {
+        long bytes = 0;
+        for (int from = 0; from < words.length; from += BATCH) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+                out.writeObject(batch(words, definitions, from));
+            }
+            bytes += buffer.size();
+        }
+        System.out.printf("wire java serialization (rmi) %.1f bytes/entry%n", (double) bytes / words.length);
+    }
+
+    private static HashedEntries batch(String[] words, String[] definitions, int from) {
+        int to = Math.min(words.length, from + BATCH);
+        HashedEntries batch = new HashedEntries(to - from);
+        for (int i = from; i < to; i++) {
+            batch.add(words[i], FNV1aHash.hash32(words[i]), definitions[i], 1);
+        }
+        return batch;
+    }
+
+    private static void heap(String name, ShardStore store, String codecName, String[] words, String[] definitions) {
+        long heapBefore = usedHeapAfterGc();
+        long start = System.nanoTime();
+        for (int i = 0; i < words.length; i++) {
+            store.put(words[i], FNV1aHash.hash32(words[i]), definitions[i], 1, null);
+        }
+        double putNanos = (System.nanoTime() - start) / (double) words.length;
+        start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < words.length; i++) {
+            sink += store.get(words[i], FNV1aHash.hash32(words[i])).length();
+        }
+        double getNanos = (System.nanoTime() - start) / (double) words.length;
+        long heap = usedHeapAfterGc() - heapBefore;
+        System.out.printf("%-7s %-5s heap %.1f bytes/entry, stored %.1f bytes/entry", name, codecName,
+                (double) heap / words.length, (double) store.bytes() / words.length);
+        if (store instanceof OffHeapShardStore) {
+            // Entries plus their 8-byte headers; the slabs themselves are allocated in chunks of up to 16 MB
+            System.out.printf(", slabs %.1f bytes/entry", (double) (store.bytes() + 8L * store.size()) / words.length);
+        }
+        System.out.printf(", put %.0f ns, get %.0f ns (%d)%n", putNanos, getNanos, sink % 10);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,105 @@
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Starts an in-process ring over RMI, loads some words, then starts many nodes joining at the same moment
+   through random members. Reports how long the joins took, how many admission retries they needed and how
+   long until every successor, predecessor and finger matched the real membership, then checks that every
+   word is still found. */
+
+public class ConcurrentJoinBenchmark {
+    private static final long CONVERGENCE_TIMEOUT_MILLIS = 120_000;
+    private static final int WORDS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java ConcurrentJoinBenchmark <nodes> <joiners> [registryPort]");
+            return;
+        }
+        int nodes = Integer.parseInt(args[0]);
+        int joiners = Integer.parseInt(args[1]);
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 1099;
+
+        LocateRegistry.createRegistry(port);
+        Registry registry = LocateRegistry.getRegistry(port);  // A stub, so nodes get each other's stubs and calls are real RPCs
+        List<NodeImpl> ring = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < nodes; i++) {
+            NodeImpl node = start(registry, "Node" + i);
+            node.join(i == 0 ? null : (Node) registry.lookup("Node0"));
+            node.startMaintenance(500, 100, 1000, 250, 8000);
+            ring.add(node);
+        }
+        Node entry = (Node) registry.lookup("Node0");
+        for (int i = 0; i < WORDS; i++) {
+            entry.insert("join-word-" + i, "definition " + i);
+        }
+        MaintenanceBenchmark.awaitConvergence(ring, System.nanoTime());
+
+        CountDownLatch ready = new CountDownLatch(joiners);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicInteger failed = new AtomicInteger();
+        List<NodeImpl> members = new ArrayList<>(ring);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < joiners; i++) {
+            String url = "Node" + (nodes + i);
+            NodeImpl node = start(registry, url);
+            Node bootstrap = (Node) registry.lookup("Node" + new Random(i).nextInt(nodes));
+            Thread t = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    node.join(bootstrap);
+                    node.startMaintenance(500, 100, 1000, 250, 8000);
+                    ring.add(node);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.out.println("Join of " + url + " failed: " + e);
+                }
+            });
+            t.start();
+            threads.add(t);
+            members.add(node);
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        go.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        long joined = System.nanoTime();
+        long convergedAt = MaintenanceBenchmark.awaitConvergence(ring, begin);
+
+        int attempts = 0;
+        int maxAttempts = 0;
+        for (NodeImpl node : members.subList(nodes, members.size())) {
+            attempts += node.getJoinAttempts();
+            maxAttempts = Math.max(maxAttempts, node.getJoinAttempts());
+        }
+        int missing = 0;
+        Random random = new Random(7);
+        for (int i = 0; i < WORDS; i++) {
+            String definition = ring.get(random.nextInt(ring.size())).lookup("join-word-" + i);
+            if (!("definition " + i).equals(definition)) {
+                missing++;
+            }
+        }
+        System.out.printf("%d joins into a ring of %d: all joined in %d ms (%d failed), %.2f admission attempts on average, %d at most%n",
+                joiners, nodes, (joined - begin) / 1_000_000, failed.get(), (double) attempts / joiners, maxAttempts);
+        System.out.printf("Ring of %d (walk finds %d) converged %s after the joins started, %d wrong pointers, %d of %d words missing%n",
+                ring.size(), ring.get(0).getRingMembers().size(),
+                convergedAt < 0 ? "never (timed out)" : ((convergedAt - begin) / 1_000_000) + " ms",
+                MaintenanceBenchmark.wrongPointers(ring), missing, WORDS);
+        System.exit(0);
+    }
+
+    private static NodeImpl start(Registry registry, String url) throws Exception {
+        NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+        registry.rebind(url, node);
+        return node;
+    }
+}
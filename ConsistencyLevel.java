@@ -0,0 +1,17 @@
+// How many of a key's replicas must answer a read or acknowledge a write
+public enum ConsistencyLevel {
+    ONE,
+    QUORUM,
+    ALL;
+
+    public int required(int replicas) {
+        switch (this) {
+            case ONE:
+                return Math.min(1, replicas);
+            case QUORUM:
+                return replicas / 2 + 1;
+            default:
+                return replicas;
+        }
+    }
+}
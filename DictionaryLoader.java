@@ -1,31 +1,43 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.rmi.Naming;
 import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class DictionaryLoader {
 
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("Usage: java DictionaryLoader <nodeURL> <dictionaryFile>");
+            System.out.println("Usage: java DictionaryLoader <nodeURL> <dictionaryFile> [workers] [maxInFlight] [batchSize]");
             return;
         }
 
         try {
             String nodeURL = args[0];
             String dictionaryFile = args[1];
-            Node initialNode = (Node) Naming.lookup(nodeURL);
+            Node initialNode = Transports.lookup(nodeURL);
+            RingClient ring = new RingClient(initialNode);  // Send batches straight to the owners
 
-            loadDictionary(initialNode, dictionaryFile);
+            if (args.length > 2) {
+                int workers = Integer.parseInt(args[2]);
+                int maxInFlight = args.length > 3 ? Integer.parseInt(args[3]) : workers * 2;
+                int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : BATCH_SIZE;
+                new ParallelDictionaryLoader(ring, workers, maxInFlight, batchSize).load(dictionaryFile);
+            } else {
+                loadDictionary(ring, dictionaryFile);
+            }
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
-    private static void loadDictionary(Node initialNode, String dictionaryFile) throws IOException {
+    private static final int BATCH_SIZE = 1000;
+
+    private static void loadDictionary(RingClient ring, String dictionaryFile) throws IOException {
         BufferedReader reader = new BufferedReader(new FileReader(dictionaryFile));
+        Map<String, String> batch = new LinkedHashMap<>();
         String line;
         while ((line = reader.readLine()) != null) {
             String[] parts = line.split(":");
@@ -33,15 +45,24 @@ public class DictionaryLoader {
             String word = parts[0].trim();
             String definition = parts[1].trim();
 
-            try {
-                int keyHash = FNV1aHash.hash32(word);  // Assuming FNV1aHash is accessible
-                Node responsibleNode = initialNode.findSuccessor(keyHash);
-                responsibleNode.insert(word, definition);
-                System.out.println("Inserted '" + word + "' at node " + responsibleNode.getURL());
-            } catch (RemoteException e) {
-                System.err.println("Failed to insert '" + word + "': " + e.getMessage());
+            batch.put(word, definition);
+            if (batch.size() >= BATCH_SIZE) {
+                insertBatch(ring, batch);
+                batch = new LinkedHashMap<>();
             }
         }
+        if (!batch.isEmpty()) {
+            insertBatch(ring, batch);
+        }
         reader.close();
     }
+
+    private static void insertBatch(RingClient ring, Map<String, String> batch) {
+        try {
+            int inserted = ring.insertAll(batch);  // Grouped by owning node, one RPC per owner
+            System.out.println("Inserted batch of " + inserted + " words");
+        } catch (RemoteException e) {
+            System.err.println("Failed to insert batch of " + batch.size() + " words: " + e.getMessage());
+        }
+    }
 }
@@ -1,29 +1,51 @@
 /* FNV-1a Hash --  Fowler/Noll/Vo Hash function */
 
-import java.util.*;
+/* Hashes the UTF-8 encoding of the key, encoded on the fly from its chars: no byte[] per call, and the same
+   value on every JVM whatever its default charset. Bytes are sign-extended before the xor, as the original
+   loop over String.getBytes() did, so ids and key hashes on a UTF-8 JVM are unchanged. */
 
 public class FNV1aHash {
 
     private static final int FNV_32_INIT = 0x811c9dc5;   // 2166136261
     private static final int FNV_32_PRIME = 0x01000193;  // 16777619;
 
-    public static int hash32(String Key) {   // FNV-1a Hash
-        byte[] kBytes = Key.getBytes();
+    public static int hash32(CharSequence key) {   // FNV-1a Hash
         int hash = FNV_32_INIT;
-        final int len = kBytes.length;
-        for(int i = 0; i < len; i++) {
-            hash ^= kBytes[i];
-            hash *= FNV_32_PRIME;
+        final int len = key.length();
+        for (int i = 0; i < len; i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                hash = (hash ^ c) * FNV_32_PRIME;
+            } else if (c < 0x800) {
+                hash = (hash ^ (byte) (0xc0 | (c >> 6))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | (c & 0x3f))) * FNV_32_PRIME;
+            } else if (!Character.isSurrogate(c)) {
+                hash = (hash ^ (byte) (0xe0 | (c >> 12))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | ((c >> 6) & 0x3f))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | (c & 0x3f))) * FNV_32_PRIME;
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(key.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, key.charAt(++i));
+                hash = (hash ^ (byte) (0xf0 | (codePoint >> 18))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | ((codePoint >> 12) & 0x3f))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | ((codePoint >> 6) & 0x3f))) * FNV_32_PRIME;
+                hash = (hash ^ (byte) (0x80 | (codePoint & 0x3f))) * FNV_32_PRIME;
+            } else {
+                hash = (hash ^ '?') * FNV_32_PRIME;  // Unpaired surrogate, encoded as '?' like String.getBytes(UTF_8)
+            }
         }
+        return fold(hash);
+    }
 
-        if (hash < 0) {  
+    // Ids and key hashes live in [0, 2^31)
+    private static int fold(int hash) {
+        if (hash < 0) {
            if (hash == Integer.MIN_VALUE) {
                hash = Integer.MAX_VALUE;
            }
-           else hash = Math.abs(hash);  
+           else hash = Math.abs(hash);
         }
         return hash;
-   }
+    }
 
    public static void main(String[] argv ) {
       int hashval = hash32( argv[0]  );
@@ -31,4 +53,3 @@ public class FNV1aHash {
    }
 
 }
-
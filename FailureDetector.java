@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/* Heartbeat failure detector for one node. heartbeat() pings the given neighbours in parallel and suspects
+   any that do not answer within timeoutMillis; routing also reports nodes whose calls failed. A suspicion
+   is cleared by the next answered ping and expires after SUSPICION_ROUNDS timeouts, so a restarted node
+   is tried again even if nobody heartbeats it. */
+
+public class FailureDetector {
+    private static final int SUSPICION_ROUNDS = 20;
+
+    private final long timeoutMillis;
+    private final Map<Integer, Long> suspectedAt = new ConcurrentHashMap<>();
+
+    public FailureDetector(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isSuspected(int nodeId) {
+        Long since = suspectedAt.get(nodeId);
+        if (since == null) {
+            return false;
+        }
+        if (System.nanoTime() - since > TimeUnit.MILLISECONDS.toNanos(timeoutMillis * SUSPICION_ROUNDS)) {
+            suspectedAt.remove(nodeId, since);
+            return false;
+        }
+        return true;
+    }
+
+    public void suspect(NodeRef node) {
+        suspectedAt.putIfAbsent(node.getId(), System.nanoTime());
+    }
+
+    public void alive(NodeRef node) {
+        suspectedAt.remove(node.getId());
+    }
+
+    // Waits at most timeoutMillis; returns true if any node's status changed
+    public boolean heartbeat(Collection<NodeRef> nodes) {
+        List<CompletableFuture<Boolean>> pings = new ArrayList<>(nodes.size());
+        for (NodeRef node : nodes) {
+            boolean wasSuspected = isSuspected(node.getId());
+            pings.add(AsyncNode.of(node.getNode()).getID()
+                    .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .handle((id, error) -> {
+                        if (error == null) {
+                            alive(node);
+                            return wasSuspected;
+                        }
+                        suspect(node);
+                        return !wasSuspected;
+                    }));
+        }
+        boolean changed = false;
+        for (CompletableFuture<Boolean> ping : pings) {
+            changed |= ping.join();
+        }
+        return changed;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
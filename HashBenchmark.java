@@ -0,0 +1,154 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/* Hash throughput of FNV1aHash.hash32 against the old String.getBytes() loop, on the words of a dictionary
+   file and on long definitions, ASCII and non-ASCII. Each case runs warmup rounds first and reports ns per
+   hash, MB/s of UTF-8 input and bytes allocated per hash. Before timing it checks that every input hashes
+   exactly like the UTF-8 bytes did. A plain main rather than JMH, which this build has no way to pull in. */
+
+public class HashBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final long ROUND_NANOS = 200_000_000;
+
+    private static volatile int sink;
+
+    private interface Hasher {
+        int hash(String key);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String file = args.length > 0 ? args[0] : "sample-dictionary-file.txt";
+        int definitionLength = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+
+        List<String> words = new ArrayList<>();
+        List<String> definitions = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            String[] parts = line.split(":");
+            if (parts.length >= 2) {
+                words.add(parts[0].trim());
+                definitions.add(parts[1].trim());
+            }
+        }
+        Random random = new Random(11);
+        String[] longAscii = new String[64];
+        String[] longMixed = new String[64];
+        for (int i = 0; i < longAscii.length; i++) {
+            longAscii[i] = longText(definitions, random, definitionLength, false);
+            longMixed[i] = longText(definitions, random, definitionLength, true);
+        }
+
+        check(words.toArray(new String[0]));
+        check(longAscii);
+        check(longMixed);
+        check(new String[]{"", "\uD83D\uDE00 emoji", "lone \uD800 high", "lone \uDC00 low", "trailing \uD800"});
+
+        Hasher legacy = HashBenchmark::legacyHash32;
+        Hasher current = FNV1aHash::hash32;
+        run(file + " words", words.toArray(new String[0]), legacy, current);
+        run(definitionLength + "-char ASCII definitions", longAscii, legacy, current);
+        run(definitionLength + "-char non-ASCII definitions", longMixed, legacy, current);
+    }
+
+    // FNV1aHash.hash32 before it encoded chars itself: a byte[] per call, in the platform charset
+    static int legacyHash32(String key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes()) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        if (hash < 0) {
+            hash = hash == Integer.MIN_VALUE ? Integer.MAX_VALUE : Math.abs(hash);
+        }
+        return hash;
+    }
+
+    private static void check(String[] inputs) {
+        for (String input : inputs) {
+            int expected = 0x811c9dc5;
+            for (byte b : input.getBytes(StandardCharsets.UTF_8)) {
+                expected = (expected ^ b) * 0x01000193;
+            }
+            if (expected < 0) {
+                expected = expected == Integer.MIN_VALUE ? Integer.MAX_VALUE : Math.abs(expected);
+            }
+            if (FNV1aHash.hash32(input) != expected) {
+                throw new IllegalStateException("hash32 differs from the UTF-8 bytes for: " + input);
+            }
+        }
+    }
+
+    private static void run(String name, String[] inputs, Hasher legacy, Hasher current) {
+        long utf8Bytes = 0;
+        for (String input : inputs) {
+            utf8Bytes += input.getBytes(StandardCharsets.UTF_8).length;
+        }
+        System.out.printf("%s: %d inputs, %.1f UTF-8 bytes each%n", name, inputs.length, (double) utf8Bytes / inputs.length);
+        report("  getBytes()", inputs, utf8Bytes, legacy);
+        report("  hash32    ", inputs, utf8Bytes, current);
+    }
+
+    private static void report(String label, String[] inputs, long utf8Bytes, Hasher hasher) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round(inputs, hasher);
+        }
+        double best = Double.MAX_VALUE;
+        double allocated = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long[] hashesAndNanos = round(inputs, hasher);
+            allocated = (double) (allocatedBytes() - allocatedBefore) / hashesAndNanos[0];
+            best = Math.min(best, (double) hashesAndNanos[1] / hashesAndNanos[0]);
+        }
+        double megabytesPerSecond = (utf8Bytes / (double) inputs.length) / best * 1e9 / 1e6;
+        System.out.printf("%s %10.1f ns/hash %9.1f MB/s %10.1f bytes allocated/hash%n", label, best, megabytesPerSecond, allocated);
+    }
+
+    // Hashes the inputs over and over for about ROUND_NANOS; returns {hashes, nanos}
+    private static long[] round(String[] inputs, Hasher hasher) {
+        long hashes = 0;
+        int accumulator = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (String input : inputs) {
+                accumulator += hasher.hash(input);
+            }
+            hashes += inputs.length;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ROUND_NANOS);
+        sink = accumulator;
+        return new long[]{hashes, elapsed};
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    // Dictionary definitions strung together to length; mixed also sprinkles in accented, CJK and emoji text
+    private static String longText(List<String> definitions, Random random, int length, boolean mixed) {
+        String[] extras = {"caf\u00E9", "na\u00EFve", "\u8F9E\u66F8", "\u0441\u043B\u043E\u0432\u043E", "\uD83D\uDCD6"};
+        StringBuilder text = new StringBuilder(length + 64);
+        while (text.length() < length) {
+            text.append(definitions.get(random.nextInt(definitions.size()))).append(' ');
+            if (mixed) {
+                text.append(extras[random.nextInt(extras.length)]).append(' ');
+            }
+        }
+        text.setLength(length);
+        if (Character.isHighSurrogate(text.charAt(length - 1))) {
+            text.setCharAt(length - 1, ' ');  // Do not cut an emoji in half
+        }
+        return text.toString();
+    }
+}
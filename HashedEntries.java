@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/* A batch of words with their hashes and definitions, for batch writes, replication and range transfers.
+   Parallel arrays rather than a map, so the hash of every word travels with it and a receiver never
+   recomputes it. Words are not deduplicated; a later entry for the same word overwrites an earlier one.
+   Versions are 0 in a client's batch, and the owner fills in the ones it wrote before replicating it. */
+
+public class HashedEntries implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String[] words;
+    private int[] hashes;
+    private String[] definitions;
+    private long[] versions;
+    private int size;
+
+    public HashedEntries() {
+        this(16);
+    }
+
+    public HashedEntries(int capacity) {
+        words = new String[Math.max(1, capacity)];
+        hashes = new int[words.length];
+        definitions = new String[words.length];
+        versions = new long[words.length];
+    }
+
+    public static HashedEntries of(Map<String, String> entries) {
+        HashedEntries batch = new HashedEntries(entries.size());
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            batch.add(entry.getKey(), FNV1aHash.hash32(entry.getKey()), entry.getValue());
+        }
+        return batch;
+    }
+
+    public static HashedEntries of(String word, int hash, String definition, long version) {
+        HashedEntries batch = new HashedEntries(1);
+        batch.add(word, hash, definition, version);
+        return batch;
+    }
+
+    public void add(String word, int hash, String definition) {
+        add(word, hash, definition, 0);
+    }
+
+    public void add(String word, int hash, String definition, long version) {
+        if (size == words.length) {
+            int capacity = Math.max(16, size * 2);
+            words = Arrays.copyOf(words, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            definitions = Arrays.copyOf(definitions, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+        words[size] = word;
+        hashes[size] = hash;
+        definitions[size] = definition;
+        versions[size] = version;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public String word(int i) {
+        return words[i];
+    }
+
+    public int hash(int i) {
+        return hashes[i];
+    }
+
+    public String definition(int i) {
+        return definitions[i];
+    }
+
+    public long version(int i) {
+        return versions[i];
+    }
+
+    public void setVersion(int i, long version) {
+        versions[i] = version;
+    }
+
+    // Read-only view of the words, without copying them
+    public List<String> words() {
+        return Collections.unmodifiableList(Arrays.asList(words).subList(0, size));
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0, size, null);
+        Arrays.fill(definitions, 0, size, null);
+        size = 0;
+    }
+
+    // Only the live part of the arrays goes into a Java-serialized copy
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        words = Arrays.copyOf(words, size);
+        hashes = Arrays.copyOf(hashes, size);
+        definitions = Arrays.copyOf(definitions, size);
+        versions = Arrays.copyOf(versions, size);
+        out.defaultWriteObject();
+    }
+}
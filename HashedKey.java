@@ -0,0 +1,30 @@
+import java.io.Serializable;
+
+// A word with its FNV1aHash.hash32, computed once where the request starts and carried along every hop
+public class HashedKey implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String word;
+    private final int hash;
+
+    public HashedKey(String word, int hash) {
+        this.word = word;
+        this.hash = hash;
+    }
+
+    public static HashedKey of(String word) {
+        return new HashedKey(word, FNV1aHash.hash32(word));
+    }
+
+    public String getWord() {
+        return word;
+    }
+
+    public int getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return word + " (" + hash + ")";
+    }
+}
@@ -0,0 +1,90 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Key share per physical host: the fraction of the ring its virtual nodes own and the words its store holds,
+   each against the share its virtual node count entitles it to. The spread is the standard deviation of
+   share / entitled share, in percent, so a balanced ring reads close to 0% whatever the hosts' weights. */
+
+public class KeyShareReport {
+    private static final long RING_SIZE = 1L << NodeImpl.NUM_FINGERS;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java KeyShareReport <nodeURL>");
+            return;
+        }
+        System.out.print(report(Transports.lookup(args[0])));
+        System.exit(0);
+    }
+
+    public static String report(Node entry) throws RemoteException {
+        List<NodeRef> members = new ArrayList<>(entry.getRingMembers());
+        members.sort(Comparator.comparingInt(NodeRef::getId));
+        Map<String, double[]> hosts = new LinkedHashMap<>();  // host -> {virtual nodes, ring share, words}
+        Map<String, Node> anyNode = new LinkedHashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            NodeRef member = members.get(i);
+            long previous = members.get((i - 1 + members.size()) % members.size()).getId();
+            long arc = members.size() == 1 ? RING_SIZE : Math.floorMod(member.getId() - previous, RING_SIZE);
+            String host = VirtualHost.hostOf(member.getUrl());
+            double[] totals = hosts.computeIfAbsent(host, h -> new double[3]);
+            totals[0]++;
+            totals[1] += (double) arc / RING_SIZE;
+            anyNode.putIfAbsent(host, member.getNode());
+        }
+        double words = 0;
+        for (Map.Entry<String, Node> host : anyNode.entrySet()) {
+            double size = host.getValue().getDictionarySize();  // Shared by all of the host's virtual nodes
+            hosts.get(host.getKey())[2] = size;
+            words += size;
+        }
+
+        int n = hosts.size();
+        double[] entitled = new double[n];
+        double[] ringShare = new double[n];
+        double[] wordShare = new double[n];
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Key share for %d hosts, %d virtual nodes:%n", n, members.size()));
+        sb.append(String.format("%-28s %-7s %-10s %-10s %-10s %-10s%n", "host", "vnodes", "entitled", "ring", "words", "word share"));
+        int h = 0;
+        for (Map.Entry<String, double[]> host : hosts.entrySet()) {
+            double[] totals = host.getValue();
+            entitled[h] = totals[0] / members.size();
+            ringShare[h] = totals[1];
+            wordShare[h] = words == 0 ? 0 : totals[2] / words;
+            sb.append(String.format("%-28s %-7d %-10s %-10s %-10d %-10s%n", host.getKey(), (int) totals[0],
+                    percent(entitled[h]), percent(ringShare[h]), (long) totals[2], percent(wordShare[h])));
+            h++;
+        }
+        sb.append(String.format("Spread of share / entitled share: ring %.1f%% std dev (max %.2fx), words %.1f%% std dev (max %.2fx)%n",
+                100 * relativeStdDev(ringShare, entitled), maxRatio(ringShare, entitled),
+                100 * relativeStdDev(wordShare, entitled), maxRatio(wordShare, entitled)));
+        return sb.toString();
+    }
+
+    // Standard deviation of actual[i] / expected[i] around 1
+    public static double relativeStdDev(double[] actual, double[] expected) {
+        double sum = 0;
+        for (int i = 0; i < actual.length; i++) {
+            double deviation = actual[i] / expected[i] - 1;
+            sum += deviation * deviation;
+        }
+        return Math.sqrt(sum / actual.length);
+    }
+
+    public static double maxRatio(double[] actual, double[] expected) {
+        double max = 0;
+        for (int i = 0; i < actual.length; i++) {
+            max = Math.max(max, actual[i] / expected[i]);
+        }
+        return max;
+    }
+
+    private static String percent(double fraction) {
+        return String.format("%.2f%%", 100 * fraction);
+    }
+}
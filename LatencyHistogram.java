@@ -0,0 +1,101 @@
+import java.util.Locale;
+
+/* Log-linear latency histogram in the style of HdrHistogram: values below 128 ns get a bucket each, and
+   every power of two above that is split into 64 buckets, so a recorded value is off by at most 1/64
+   (about 1.6%) anywhere from nanoseconds to hours. Recording is one array increment and never allocates.
+   Not thread-safe; give each thread its own and merge them with add(). */
+
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 128;
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    // The highest value in the bucket holding the p-th fraction of the recorded values, capped at the maximum
+    public long percentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueIn(i), max);
+            }
+        }
+        return max;
+    }
+
+    // Summary plus every non-empty bucket as [highest value, count], all in nanoseconds
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                "{\"count\":%d,\"min\":%d,\"mean\":%.1f,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d,\"buckets\":[",
+                count, count == 0 ? 0 : min, getMean(), percentile(0.50), percentile(0.90), percentile(0.99),
+                percentile(0.999), max));
+        boolean first = true;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                json.append(first ? "" : ",").append('[').append(highestValueIn(i)).append(',').append(counts[i]).append(']');
+                first = false;
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;  // value >> shift is in [64, 128)
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int k = index - LINEAR_BUCKETS;
+        int shift = k / SUB_BUCKETS + 1;
+        long subBucket = k % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
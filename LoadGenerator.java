@@ -0,0 +1,188 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/* Starts an N-node ring on localhost and drives a read/write mix through it, then writes throughput and
+   latency histograms as JSON. Keys are drawn uniformly or from a Zipf distribution over --keys words.
+   Closed loop: --threads callers each send the next request when the last one returns. Open loop: requests
+   are due at a fixed --rate across all threads, and latency counts from when a request was due, not from
+   when it was sent, so a slow ring shows up as latency rather than as a lower request rate. */
+
+public class LoadGenerator {
+    private interface KeyChooser {
+        int next(Random random);
+    }
+
+    private static class Worker extends Thread {
+        final LatencyHistogram reads = new LatencyHistogram();
+        final LatencyHistogram writes = new LatencyHistogram();
+        long errors;
+
+        Worker(Runnable body, int index) {
+            super(body, "load-" + index);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("-h") || args[0].equals("--help"))) {
+            System.out.println("Usage: java LoadGenerator [--nodes=4] [--transport=rmi|nio] [--base-port=5600] [--keys=10000]"
+                    + " [--read-percent=90] [--distribution=uniform|zipf] [--zipf-exponent=0.99] [--mode=closed|open]"
+                    + " [--threads=8] [--rate=<ops/s, open loop>] [--warmup-seconds=2] [--seconds=10] [--write-batch=1]"
+                    + " [--write-delay-us=200] [--output=<file>]");
+            return;
+        }
+        NodeConfig config = NodeConfig.parse(args, 0);
+        int nodes = config.getInt("nodes", 4);
+        int basePort = config.getInt("base-port", 5600);
+        int keys = config.getInt("keys", 10_000);
+        int readPercent = config.getInt("read-percent", 90);
+        String distribution = config.get("distribution", "uniform");
+        double exponent = config.getDouble("zipf-exponent", 0.99);
+        boolean openLoop = config.get("mode", "closed").equals("open");
+        int threads = config.getInt("threads", 8);
+        double rate = config.getDouble("rate", 1000);
+        int warmupSeconds = config.getInt("warmup-seconds", 2);
+        int seconds = config.getInt("seconds", 10);
+        int writeBatch = config.getInt("write-batch", 1);  // No replicas or log here, so batching is off by default
+        long writeDelayMicros = config.getLong("write-delay-us", 200);
+
+        NodeLogger.configure(NodeLogger.Level.WARNING, 1, true);  // Per-request lines would measure the logger
+        List<Node> entryPoints = startRing(config.transport(), nodes, basePort, writeBatch, writeDelayMicros);
+        Map<String, String> words = new LinkedHashMap<>();
+        for (int i = 0; i < keys; i++) {
+            words.put("key-" + i, "definition of key " + i);
+        }
+        entryPoints.get(0).insertAll(words);
+
+        KeyChooser chooser;
+        if (distribution.equals("zipf")) {
+            ZipfGenerator zipf = new ZipfGenerator(keys, exponent);
+            chooser = zipf::next;
+        } else {
+            chooser = random -> random.nextInt(keys);
+        }
+
+        if (warmupSeconds > 0) {
+            run(entryPoints, chooser, readPercent, openLoop, threads, rate, warmupSeconds);
+        }
+        long start = System.nanoTime();
+        List<Worker> workers = run(entryPoints, chooser, readPercent, openLoop, threads, rate, seconds);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        LatencyHistogram reads = new LatencyHistogram();
+        LatencyHistogram writes = new LatencyHistogram();
+        long errors = 0;
+        for (Worker worker : workers) {
+            reads.add(worker.reads);
+            writes.add(worker.writes);
+            errors += worker.errors;
+        }
+        LatencyHistogram all = new LatencyHistogram();
+        all.add(reads);
+        all.add(writes);
+
+        String json = String.format(Locale.ROOT,
+                "{\"benchmark\":\"LoadGenerator\",\"config\":{\"nodes\":%d,\"transport\":\"%s\",\"keys\":%d,\"readPercent\":%d,"
+                        + "\"distribution\":\"%s\",\"zipfExponent\":%s,\"mode\":\"%s\",\"threads\":%d,\"rate\":%s,\"seconds\":%d,"
+                        + "\"writeBatch\":%d,\"writeDelayUs\":%d},"
+                        + "\"results\":{\"operations\":%d,\"errors\":%d,\"elapsedSeconds\":%.3f,\"throughput\":%.1f,"
+                        + "\"latencyUnit\":\"ns\",\"all\":%s,\"reads\":%s,\"writes\":%s}}",
+                nodes, config.transport(), keys, readPercent, distribution,
+                distribution.equals("zipf") ? String.valueOf(exponent) : "null", openLoop ? "open" : "closed", threads,
+                openLoop ? String.valueOf(rate) : "null", seconds, writeBatch, writeDelayMicros,
+                all.getCount(), errors, elapsed, all.getCount() / elapsed, all.toJson(), reads.toJson(), writes.toJson());
+        String output = config.get("output", null);
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            try (Writer file = new FileWriter(output)) {
+                file.write(json);
+                file.write('\n');
+            }
+        }
+        System.err.printf(Locale.ROOT, "%d ops in %.1f s = %.0f ops/s, %d errors, p50=%.1fus p99=%.1fus p999=%.1fus%n",
+                all.getCount(), elapsed, all.getCount() / elapsed, errors,
+                all.percentile(0.50) / 1e3, all.percentile(0.99) / 1e3, all.percentile(0.999) / 1e3);
+        System.exit(0);
+    }
+
+    private static List<Node> startRing(String transportName, int nodes, int basePort, int writeBatch, long writeDelayMicros) throws Exception {
+        NodeTransport transport;
+        if (transportName.equals("nio")) {
+            transport = NioTransport.shared();
+        } else {
+            LocateRegistry.createRegistry(basePort);
+            transport = new RmiTransport("localhost", basePort);  // A stub, so calls between nodes are real RPCs
+        }
+        List<Node> entryPoints = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            String url = transport.nodeURL(i, basePort + 1 + i);
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+            node.setWritePipeline(writeBatch, writeDelayMicros);
+            transport.export(node);
+            node.join(i == 0 ? null : transport.lookup(transport.nodeURL(0, basePort + 1)));
+            entryPoints.add(transport.lookup(url));
+        }
+        System.err.println("Ring of " + nodes + " nodes over " + transportName + " started");
+        return entryPoints;
+    }
+
+    private static List<Worker> run(List<Node> entryPoints, KeyChooser chooser, int readPercent, boolean openLoop,
+                                    int threads, double rate, int seconds) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        long period = openLoop ? (long) (threads * 1e9 / rate) : 0;  // Each thread's share of the schedule
+        List<Worker> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            Worker[] self = new Worker[1];
+            self[0] = new Worker(() -> {
+                Worker worker = self[0];
+                Random random = new Random(index);
+                long due = start + index * period / threads;  // Stagger the threads over one period
+                while (true) {
+                    long sent = System.nanoTime();
+                    if (openLoop) {
+                        if (due >= deadline) {
+                            break;
+                        }
+                        while ((sent = System.nanoTime()) < due) {
+                            LockSupport.parkNanos(due - sent);
+                        }
+                    } else if (sent >= deadline) {
+                        break;
+                    }
+                    long measuredFrom = openLoop ? due : sent;
+                    Node node = entryPoints.get(random.nextInt(entryPoints.size()));
+                    String word = "key-" + chooser.next(random);
+                    boolean read = random.nextInt(100) < readPercent;
+                    try {
+                        if (read) {
+                            node.lookup(word);
+                        } else {
+                            node.insert(word, "definition of " + word + " at " + sent);
+                        }
+                        (read ? worker.reads : worker.writes).record(System.nanoTime() - measuredFrom);
+                    } catch (Exception e) {
+                        worker.errors++;
+                    }
+                    due += period;
+                }
+            }, index);
+            workers.add(self[0]);
+            self[0].start();
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        return workers;
+    }
+}
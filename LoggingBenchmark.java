@@ -0,0 +1,90 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/* Cost of a NodeLogger call on the request thread, with several threads logging at once: a TRACE line that is
+   filtered out, a sampled TRACE line, and an INFO line per call in async and sync mode. Prints average and
+   p99 ns per call and how many lines async mode dropped. The average is CPU time of the logging thread, so
+   it leaves out the writer thread's work in async mode. Writes to logs/node-<id>-log.log. */
+
+public class LoggingBenchmark {
+    private static final int SAMPLES_PER_THREAD = 10_000;
+
+    private interface Call {
+        void log(NodeLogger logger, int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java LoggingBenchmark <threads> <callsPerThread> [nodeId]");
+            return;
+        }
+        int threads = Integer.parseInt(args[0]);
+        int calls = Integer.parseInt(args[1]);
+        NodeLogger logger = new NodeLogger(args.length > 2 ? Integer.parseInt(args[2]) : 9999);
+
+        Call trace = (l, i) -> l.logTrace(i, () -> "Finding successor for key: " + i);
+        Call info = (l, i) -> l.logInfo("Word 'word-" + i + "' added to the dictionary on Node 42");
+
+        NodeLogger.configure(NodeLogger.Level.INFO, 1, true);
+        run("warmup", logger, threads, calls, trace);
+        run("trace, filtered out", logger, threads, calls, trace);
+        NodeLogger.configure(NodeLogger.Level.TRACE, 100, true);
+        run("trace, 1 in 100 kept", logger, threads, calls, trace);
+        NodeLogger.configure(NodeLogger.Level.INFO, 1, true);
+        run("info, async", logger, threads, calls, info);
+        NodeLogger.flush();
+        NodeLogger.configure(NodeLogger.Level.INFO, 1, false);
+        run("info, sync", logger, threads, calls, info);
+        System.out.printf("Dropped by async mode: %d lines%n", NodeLogger.droppedLines());
+    }
+
+    private static void run(String name, NodeLogger logger, int threads, int calls, Call call) throws Exception {
+        long droppedBefore = NodeLogger.droppedLines();
+        int sampleEvery = Math.max(1, calls / SAMPLES_PER_THREAD);
+        List<long[]> samples = new ArrayList<>();
+        long[] totals = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int index = t;
+            long[] latencies = new long[calls / sampleEvery];
+            samples.add(latencies);
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long begin = threadCpuNanos();
+                for (int i = 0; i < calls; i++) {
+                    if (i % sampleEvery == 0 && i / sampleEvery < latencies.length) {
+                        long before = System.nanoTime();
+                        call.log(logger, i);
+                        latencies[i / sampleEvery] = System.nanoTime() - before;
+                    } else {
+                        call.log(logger, i);
+                    }
+                }
+                totals[index] = threadCpuNanos() - begin;
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long[] all = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        double average = Arrays.stream(totals).sum() / (double) threads / calls;
+        System.out.printf("%-22s %8.1f ns CPU/call  p99 %8d ns wall  dropped %d%n", name, average,
+                all[(int) (all.length * 0.99)], NodeLogger.droppedLines() - droppedBefore);
+    }
+
+    // CPU time rather than wall time, so threads sharing a core do not count each other's work
+    private static long threadCpuNanos() {
+        return ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+    }
+}
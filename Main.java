@@ -1,41 +1,85 @@
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 
 public class Main {
     public static void main(String[] args) {
-            if (args.length != 2) {
-                System.out.println("Usage: java Main <nodeID> <port>");
+            if (args.length < 2) {
+                System.out.println("Usage: java Main <nodeID> <port> [--transport=rmi|nio] [--bootstrap=<nodeURL>] [--store=map|offheap] [--durability=none|batch|op] [--data-dir=<dir>] [--snapshot-every=<records>] [--replicas=<n>] [--read-consistency=one|quorum|all] [--write-consistency=one|quorum|all] [--maintenance=true|false] [--stabilize-ms=<ms>] [--fix-fingers-ms=<ms>] [--check-predecessor-ms=<ms>] [--max-backoff-ms=<ms>] [--heartbeat-ms=<ms>] [--rpc-timeout-ms=<ms>] [--vnodes=<n>] [--weight=<w>] [--cache-entries=<n>] [--cache-ttl-ms=<ms>] [--write-batch=<n>] [--write-delay-us=<us>] [--value-codec=<dictionaryFile>] [--log-level=trace|info|warning|severe] [--trace-sample=<n>] [--log-mode=async|sync] [--metrics-port=<port>]");
                 System.exit(1);
             }
             int id = Integer.parseInt(args[0]);
             int port = Integer.parseInt(args[1]);
-            String url = "Node" + id;
-            Registry registry = null;
+            NodeConfig config = NodeConfig.parse(args, 2);
+            Transports.setCallTimeout(config.getLong("rpc-timeout-ms", 2000));
+            NodeLogger.configure(NodeLogger.Level.valueOf(config.get("log-level", "info").toUpperCase()),
+                    config.getInt("trace-sample", 1), config.get("log-mode", "async").equals("async"));
 
             try {
-                NodeImpl node = new NodeImpl(id, url);
-                registry = LocateRegistry.getRegistry("localhost", 1099);
-                registry.rebind(url, node);
-                System.out.println("Node " + url + " is running at port " + port + "...");
+                // Every node must train on the same file for their connections to agree on the codec
+                String codecFile = config.get("value-codec", null);
+                ValueCodec codec = codecFile == null ? ValueCodec.PLAIN : ValueCodec.fromDictionaryFile(Paths.get(codecFile));
+                NioTransport.shared().setValueCodec(codec);
+                NodeTransport transport = Transports.create(config.transport(), port);
+                ShardStore store = config.get("store", "map").equals("offheap") ? new OffHeapShardStore(codec) : new MapShardStore(codec);
+                // The id only names the host; its ring positions are hashed from its URL
+                int virtualNodes = VirtualHost.virtualNodeCount(config.getInt("vnodes", 1), config.getDouble("weight", 1.0));
+                VirtualHost node = new VirtualHost(transport, id, port, virtualNodes, store);
+                String url = node.getURL();
+                int replicas = config.getInt("replicas", 1);
+                String durability = config.get("durability", "none");
+                node.setReplication(replicas,
+                        ConsistencyLevel.valueOf(config.get("read-consistency", "one").toUpperCase()),
+                        ConsistencyLevel.valueOf(config.get("write-consistency", "quorum").toUpperCase()));
+                node.setReadCache(config.getInt("cache-entries", 10_000), config.getLong("cache-ttl-ms", 30_000));
+                // Batching only pays when a write has replicas or a log commit to share; otherwise it only adds delay
+                int writeBatch = config.getInt("write-batch", replicas > 1 || !durability.equals("none") ? 256 : 1);
+                node.setWritePipeline(writeBatch, config.getLong("write-delay-us", 200));
+                if (!durability.equals("none")) {
+                    WriteAheadLog.SyncMode syncMode = WriteAheadLog.SyncMode.valueOf(durability.toUpperCase());
+                    Path dataDir = Paths.get(config.get("data-dir", "data"), "node-" + id);
+                    node.attachLog(new WriteAheadLog(dataDir, syncMode, config.getLong("snapshot-every", 100_000)));
+                }
+                node.export(transport);
+                System.out.println("Node " + url + " is running at port " + port + " over " + config.transport()
+                        + " with " + virtualNodes + " virtual node(s)...");
 
                 if (id != 0) {
-                    Node node0 = (Node) registry.lookup("Node0");
+                    // With nio, node i listens on <base port> + i, so Node0 is at port - id
+                    String bootstrapURL = config.get("bootstrap", transport.nodeURL(0, port - id));
+                    Node node0 = transport.lookup(bootstrapURL);
                     node.join(node0);
-                    System.out.println("Node " + url + " has joined the ring via Node0.");
+                    System.out.println("Node " + url + " has joined the ring via " + bootstrapURL + ".");
                 } else {
                     System.out.println("Node0 has started, initializing the Chord ring...");
                     node.join(null); // Node0 initializes the ring
                 }
+                if (config.getBoolean("maintenance", true)) {
+                    node.startMaintenance(config.getLong("stabilize-ms", 500), config.getLong("fix-fingers-ms", 100),
+                            config.getLong("check-predecessor-ms", 1000), config.getLong("heartbeat-ms", 250),
+                            config.getLong("max-backoff-ms", 8000));
+                }
+                int metricsPort = config.getInt("metrics-port", 0);
+                if (metricsPort > 0) {
+                    MetricsExporter exporter = new MetricsExporter(metricsPort, node.getNodes());
+                    exporter.start();
+                    System.out.println("Metrics at http://localhost:" + metricsPort + "/metrics");
+                }
+                // kill (not kill -9) hands this node's words to its successor before the process exits
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        node.leave();
+                    } catch (RemoteException e) {
+                        System.err.println("Graceful leave failed: " + e.getMessage());
+                    }
+                    NodeLogger.flush();
+                }));
 
                 // Start the DictionaryLoader to load the dictionary file
-                String nodeURL = "rmi://localhost/" + url;
+                String nodeURL = url.startsWith(NioTransport.SCHEME) ? url : "rmi://localhost/" + url;
                 String dictionaryFile = "sample-dictionary-file.txt";
                 DictionaryLoader.main(new String[]{nodeURL, dictionaryFile});
-                generateReport();
+                RingInspector.inspect(node.getNodes().get(0)).writeReport("ChordSystemReport.txt");
 
             } catch (Exception e) {
                 System.err.println("Exception in Node " + id + ": " + e);
@@ -43,38 +87,4 @@ public class Main {
             }
         }
 
-    private static void generateReport() {
-        try {
-            Registry registry = LocateRegistry.getRegistry("localhost", 1099);
-            String[] boundNames = registry.list();  // Get all registered names in the registry
-            String reportFileName = "ChordSystemReport.txt";
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(reportFileName))) {
-                writer.write("Network Report:\n");
-                for (String name : boundNames) {
-                    try {
-                        Node node = (Node) registry.lookup(name);
-                        int dictionarySize = node.getDictionarySize();
-                        String fingerTable = node.printFingerTable();
-                        writer.write("Node " + name + " has " + dictionarySize + " words.\n");
-                        writer.write("Finger Table for " + name + ":\n" + fingerTable + "\n\n");
-                    } catch (RemoteException e) {
-                        writer.write("Failed to connect to node " + name + ": " + e.getMessage() + "\n");
-                    }
-                }
-                // Add the Chord ring's diagram
-                writer.write("Chord Ring Diagram:\n");
-                // Assuming a simple diagram. You may want to develop a method to create a more complex diagram.
-                for (String name : boundNames) {
-                    writer.write(name + " -> ");
-                }
-                writer.write(boundNames[0] + "\n"); // Completing the circle
-            } catch (IOException e) {
-                System.err.println("Error writing to the report file: " + e.getMessage());
-                e.printStackTrace();
-            }
-        } catch (Exception e) {
-            System.err.println("Error generating report: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/* Starts an in-process ring over RMI with background maintenance on every node, then joins more nodes one
+   at a time. After each join it reports how long it took until every successor, predecessor and finger in
+   the ring matched the real membership, and the average hops per lookup once it had, so the maintenance
+   intervals can be tuned for a ring size. */
+
+public class MaintenanceBenchmark {
+    private static final long CONVERGENCE_TIMEOUT_MILLIS = 120_000;
+    private static final int LOOKUPS_PER_JOIN = 1000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java MaintenanceBenchmark <nodes> <joins> [stabilizeMs] [fixFingersMs] [maxBackoffMs] [registryPort]");
+            return;
+        }
+        int nodes = Integer.parseInt(args[0]);
+        int joins = Integer.parseInt(args[1]);
+        long stabilizeMillis = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        long fixFingersMillis = args.length > 3 ? Long.parseLong(args[3]) : 100;
+        long maxBackoffMillis = args.length > 4 ? Long.parseLong(args[4]) : 8000;
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : 1099;
+
+        LocateRegistry.createRegistry(port);
+        Registry registry = LocateRegistry.getRegistry(port);  // A stub, so nodes get each other's stubs and calls are real RPCs
+        List<NodeImpl> ring = new ArrayList<>();
+        for (int i = 0; i < nodes + joins; i++) {
+            String url = "Node" + i;
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+            registry.rebind(url, node);
+            long start = System.nanoTime();
+            node.join(i == 0 ? null : (Node) registry.lookup("Node0"));
+            node.startMaintenance(stabilizeMillis, fixFingersMillis, 2 * stabilizeMillis, 250, maxBackoffMillis);
+            ring.add(node);
+            if (i < nodes - 1) {
+                continue;  // Build the initial ring without measuring each step
+            }
+            long convergedAt = awaitConvergence(ring, start);
+            RoutingStats stats = lookups(ring, new Random(i));
+            System.out.printf("nodes=%d converged=%s avgHops=%.2f wrong=%d%n", ring.size(),
+                    convergedAt < 0 ? "no (timed out)" : ((convergedAt - start) / 1_000_000) + "ms",
+                    stats.averageHops(), wrongPointers(ring));
+        }
+
+        long runs = 0;
+        long changes = 0;
+        long convergence = 0;
+        for (NodeImpl node : ring) {
+            MaintenanceStats stats = node.getMaintenanceStats();
+            runs += stats.getStabilizeRuns() + stats.getFingerFixes() + stats.getPredecessorChecks();
+            changes += stats.getChanges();
+            convergence += Math.max(0, stats.getLastConvergenceMillis());
+        }
+        System.out.printf("Maintenance: %d runs, %d of them changed a pointer, nodes report %d ms average convergence%n",
+                runs, changes, convergence / ring.size());
+        System.exit(0);
+    }
+
+    static long awaitConvergence(List<NodeImpl> ring, long start) throws Exception {
+        while (System.nanoTime() - start < CONVERGENCE_TIMEOUT_MILLIS * 1_000_000) {
+            if (wrongPointers(ring) == 0) {
+                return System.nanoTime();
+            }
+            Thread.sleep(10);
+        }
+        return -1;
+    }
+
+    // Successors, predecessors and fingers that differ from what the real membership says they should be
+    static int wrongPointers(List<NodeImpl> ring) throws Exception {
+        int[] ids = new int[ring.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ring.get(i).getID();
+        }
+        Arrays.sort(ids);
+        int wrong = 0;
+        for (NodeImpl node : ring) {
+            int id = node.getID();
+            int index = Arrays.binarySearch(ids, id);
+            if (node.successorRef().getId() != ids[(index + 1) % ids.length]) {
+                wrong++;
+            }
+            if (node.predecessorRef().getId() != ids[(index - 1 + ids.length) % ids.length]) {
+                wrong++;
+            }
+            List<NodeRef> fingers = node.getFingers();
+            for (int i = 0; i < fingers.size(); i++) {
+                NodeRef finger = fingers.get(i);
+                if (finger == null || finger.getId() != ownerOf(ids, (int) (((long) id + (1L << i)) % (1L << NodeImpl.NUM_FINGERS)))) {
+                    wrong++;
+                }
+            }
+        }
+        return wrong;
+    }
+
+    private static RoutingStats lookups(List<NodeImpl> ring, Random random) throws Exception {
+        RoutingStats before = totalStats(ring);
+        for (int i = 0; i < LOOKUPS_PER_JOIN; i++) {
+            ring.get(random.nextInt(ring.size())).findSuccessor(FNV1aHash.hash32("word-" + random.nextInt()));
+        }
+        return totalStats(ring).minus(before);
+    }
+
+    private static RoutingStats totalStats(List<NodeImpl> ring) throws Exception {
+        RoutingStats total = new RoutingStats(0, 0, 0);
+        for (NodeImpl node : ring) {
+            total = total.plus(node.getRoutingStats());
+        }
+        return total;
+    }
+
+    private static int ownerOf(int[] sortedIds, int key) {
+        int idx = Arrays.binarySearch(sortedIds, key);
+        if (idx >= 0) {
+            return sortedIds[idx];
+        }
+        int insertion = -idx - 1;
+        return sortedIds[insertion == sortedIds.length ? 0 : insertion];
+    }
+}
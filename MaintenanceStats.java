@@ -0,0 +1,68 @@
+import java.io.Serializable;
+
+// Snapshot of a node's background maintenance: how often each task ran, how many runs changed a pointer,
+// the current (backed-off) intervals and how long the ring took to settle around the node after the last change
+public class MaintenanceStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long stabilizeRuns;
+    private final long fingerFixes;
+    private final long predecessorChecks;
+    private final long changes;
+    private final boolean converged;
+    private final long lastConvergenceMillis;
+    private final long stabilizeDelayMillis;
+    private final long fixFingersDelayMillis;
+
+    public MaintenanceStats(long stabilizeRuns, long fingerFixes, long predecessorChecks, long changes, boolean converged,
+                            long lastConvergenceMillis, long stabilizeDelayMillis, long fixFingersDelayMillis) {
+        this.stabilizeRuns = stabilizeRuns;
+        this.fingerFixes = fingerFixes;
+        this.predecessorChecks = predecessorChecks;
+        this.changes = changes;
+        this.converged = converged;
+        this.lastConvergenceMillis = lastConvergenceMillis;
+        this.stabilizeDelayMillis = stabilizeDelayMillis;
+        this.fixFingersDelayMillis = fixFingersDelayMillis;
+    }
+
+    public long getStabilizeRuns() {
+        return stabilizeRuns;
+    }
+
+    public long getFingerFixes() {
+        return fingerFixes;
+    }
+
+    public long getPredecessorChecks() {
+        return predecessorChecks;
+    }
+
+    public long getChanges() {
+        return changes;
+    }
+
+    // True once a full round of finger fixes and a stabilize have run without changing anything
+    public boolean isConverged() {
+        return converged;
+    }
+
+    // From the first change after the previous quiet period to the last change before this one, -1 if none yet
+    public long getLastConvergenceMillis() {
+        return lastConvergenceMillis;
+    }
+
+    public long getStabilizeDelayMillis() {
+        return stabilizeDelayMillis;
+    }
+
+    public long getFixFingersDelayMillis() {
+        return fixFingersDelayMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stabilize=%d fixFingers=%d checkPredecessor=%d changes=%d converged=%b lastConvergence=%dms delays=%d/%dms",
+                stabilizeRuns, fingerFixes, predecessorChecks, changes, converged, lastConvergenceMillis,
+                stabilizeDelayMillis, fixFingersDelayMillis);
+    }
+}
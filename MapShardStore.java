@@ -0,0 +1,214 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+public class MapShardStore implements ShardStore {
+    // Definitions are kept encoded, decoded on every read; no String per entry either way
+    private static class Stored {
+        final byte[] definition;
+        final long version;
+
+        Stored(byte[] definition, long version) {
+            this.definition = definition;
+            this.version = version;
+        }
+    }
+
+    private final ValueCodec codec;
+    private final ConcurrentHashMap<String, Stored> dictionary = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    // Words by key hash, kept in step with the map inside its per-key lock, so (a, b] is a sub-range walk
+    private final ConcurrentSkipListMap<Integer, String[]> hashIndex = new ConcurrentSkipListMap<>();
+
+    public MapShardStore() {
+        this(ValueCodec.PLAIN);
+    }
+
+    public MapShardStore(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public String get(String word, int keyHash) {
+        Stored value = dictionary.get(word);
+        return value == null ? null : codec.decode(value.definition);
+    }
+
+    @Override
+    public VersionedValue getVersioned(String word, int keyHash) {
+        Stored value = dictionary.get(word);
+        return value == null ? VersionedValue.ABSENT : new VersionedValue(codec.decode(value.definition), value.version);
+    }
+
+    // A null definition is not kept in the map, as before versions: the word reads as absent
+    @Override
+    public void put(String word, int keyHash, String definition, long version, Runnable whileLocked) {
+        dictionary.compute(word, (k, old) -> write(k, keyHash, old, definition, version, whileLocked));
+    }
+
+    private Stored write(String word, int keyHash, Stored old, String definition, long version, Runnable whileLocked) {
+        byte[] encoded = definition == null ? null : codec.encode(definition);
+        bytes.addAndGet((encoded == null ? 0 : entryBytes(word, encoded)) - (old == null ? 0 : entryBytes(word, old.definition)));
+        if (old == null && definition != null) {
+            index(word, keyHash);
+        } else if (old != null && definition == null) {
+            unindex(word, keyHash);
+        }
+        if (whileLocked != null) {
+            whileLocked.run();
+        }
+        return encoded == null ? null : new Stored(encoded, version);
+    }
+
+    @Override
+    public boolean compareAndSet(String word, int keyHash, long expectedVersion, String definition, long version, Runnable whileLocked) {
+        boolean[] applied = new boolean[1];
+        dictionary.compute(word, (k, old) -> {
+            if ((old == null ? 0 : old.version) != expectedVersion) {
+                return old;
+            }
+            applied[0] = true;
+            return write(k, keyHash, old, definition, version, whileLocked);
+        });
+        return applied[0];
+    }
+
+    @Override
+    public boolean remove(String word, int keyHash, Runnable whileLocked) {
+        boolean[] removed = new boolean[1];
+        dictionary.computeIfPresent(word, (k, old) -> {
+            bytes.addAndGet(-entryBytes(k, old.definition));
+            unindex(k, keyHash);
+            if (whileLocked != null) {
+                whileLocked.run();
+            }
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean putIfAbsent(String word, int keyHash, String definition, long version, Runnable whileLocked) {
+        if (definition == null) {
+            return false;  // Would store nothing, so nothing to log either
+        }
+        boolean[] added = new boolean[1];
+        dictionary.computeIfAbsent(word, k -> {
+            byte[] encoded = codec.encode(definition);
+            bytes.addAndGet(entryBytes(k, encoded));
+            index(k, keyHash);
+            if (whileLocked != null) {
+                whileLocked.run();
+            }
+            added[0] = true;
+            return new Stored(encoded, version);
+        });
+        return added[0];
+    }
+
+    @Override
+    public int removeRange(int start, int end, Consumer<String> whileLocked) {
+        int removed = 0;
+        for (ConcurrentNavigableMap<Integer, String[]> range : ranges(start, end)) {
+            for (Map.Entry<Integer, String[]> entry : range.entrySet()) {
+                for (String word : entry.getValue()) {
+                    if (remove(word, entry.getKey(), whileLocked == null ? null : () -> whileLocked.accept(word))) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public long bytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> action) {
+        dictionary.forEach((word, value) -> action.accept(word, codec.decode(value.definition)));
+    }
+
+    @Override
+    public void forEachInRange(int start, int end, EntryVisitor action) {
+        for (ConcurrentNavigableMap<Integer, String[]> range : ranges(start, end)) {
+            for (Map.Entry<Integer, String[]> entry : range.entrySet()) {
+                for (String word : entry.getValue()) {
+                    Stored value = dictionary.get(word);
+                    if (value != null) {  // Removed since we read the index
+                        action.accept(word, entry.getKey(), codec.decode(value.definition), value.version);
+                    }
+                }
+            }
+        }
+    }
+
+    // The index is sorted by hash, so a page walks only the entries it returns
+    @Override
+    public int scanRange(int start, int end, int limit, EntryVisitor action) {
+        int visited = 0;
+        for (ConcurrentNavigableMap<Integer, String[]> range : ranges(start, end)) {
+            for (Map.Entry<Integer, String[]> entry : range.entrySet()) {
+                for (String word : entry.getValue()) {
+                    Stored value = dictionary.get(word);
+                    if (value != null) {
+                        action.accept(word, entry.getKey(), codec.decode(value.definition), value.version);
+                        visited++;
+                    }
+                }
+                if (visited >= limit) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return end;
+    }
+
+    // (start, end] as one or two views of the index, split where the ring wraps
+    private List<ConcurrentNavigableMap<Integer, String[]>> ranges(int start, int end) {
+        List<ConcurrentNavigableMap<Integer, String[]>> ranges = new ArrayList<>(2);
+        if (start < end) {
+            ranges.add(hashIndex.subMap(start, false, end, true));
+        } else {
+            ranges.add(hashIndex.tailMap(start, false));
+            ranges.add(hashIndex.headMap(end, true));
+        }
+        return ranges;
+    }
+
+    // Words sharing a hash are rare, so a small array per hash is cheaper than a set
+    private void index(String word, int keyHash) {
+        hashIndex.merge(keyHash, new String[]{word}, (words, added) -> {
+            String[] grown = Arrays.copyOf(words, words.length + 1);
+            grown[words.length] = word;
+            return grown;
+        });
+    }
+
+    private void unindex(String word, int keyHash) {
+        hashIndex.computeIfPresent(keyHash, (k, words) -> {
+            String[] kept = Arrays.stream(words).filter(w -> !w.equals(word)).toArray(String[]::new);
+            return kept.length == 0 ? null : kept;
+        });
+    }
+
+    private static long entryBytes(String word, byte[] definition) {
+        return word.getBytes(StandardCharsets.UTF_8).length + (definition == null ? 0 : definition.length);
+    }
+}
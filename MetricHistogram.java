@@ -0,0 +1,50 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/* Fixed-bucket histogram for metrics that stay on in production: the buckets are allocated up front and
+   every bucket, and the sum, is a LongAdder, so concurrent recorders rarely touch the same cache line.
+   Values are in the recorder's unit (e.g. nanoseconds); scale converts them to the exported unit. */
+
+public class MetricHistogram {
+    private final long[] bounds;  // Upper bound of each bucket, inclusive; a last bucket takes everything above
+    private final LongAdder[] counts;
+    private final LongAdder sum = new LongAdder();
+
+    public MetricHistogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    // 25 us to 10 s, roughly 1-2.5-5 steps
+    public static MetricHistogram latencyNanos() {
+        return new MetricHistogram(25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000,
+                10_000_000, 25_000_000, 50_000_000, 100_000_000, 250_000_000, 500_000_000, 1_000_000_000,
+                2_500_000_000L, 5_000_000_000L, 10_000_000_000L);
+    }
+
+    public void record(long value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sum.add(value);
+    }
+
+    // Cumulative bucket counts, the way Prometheus exports them, with bounds and sum divided by scale
+    public MetricsSnapshot.Metric snapshot(String name, String help, double scale) {
+        double[] scaledBounds = new double[bounds.length];
+        long[] cumulative = new long[counts.length];
+        long running = 0;
+        for (int i = 0; i < counts.length; i++) {
+            running += counts[i].sum();
+            cumulative[i] = running;
+            if (i < bounds.length) {
+                scaledBounds[i] = bounds[i] / scale;
+            }
+        }
+        return MetricsSnapshot.Metric.histogram(name, help, scaledBounds, cumulative, sum.sum() / scale);
+    }
+}
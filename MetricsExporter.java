@@ -0,0 +1,78 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/* Serves the metrics of this process's nodes at http://localhost:<port>/metrics in the Prometheus text format,
+   one sample per node labelled with its id and URL. A scrape only reads counters, so it costs the nodes
+   nothing between scrapes. Bound to the loopback interface; a scraper on another host goes through a proxy.
+   Run as a program, it prints the metrics of a remote node: java MetricsExporter <nodeURL>. */
+
+public class MetricsExporter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    public MetricsExporter(int port, List<? extends Node> nodes) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-exporter-" + port);
+            t.setDaemon(true);
+            return t;
+        }));
+        server.createContext("/metrics", exchange -> {
+            byte[] body;
+            int status = 200;
+            try {
+                body = scrape(nodes).getBytes(StandardCharsets.UTF_8);
+            } catch (RemoteException e) {
+                body = ("Scrape failed: " + e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+                status = 500;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Every node's snapshot, plus the process-wide count of NIO calls sent
+    public static String scrape(List<? extends Node> nodes) throws RemoteException {
+        List<MetricsSnapshot> snapshots = new ArrayList<>();
+        for (Node node : nodes) {
+            snapshots.add(node.getMetrics());
+        }
+        return MetricsSnapshot.toPrometheus(snapshots)
+                + "# HELP chord_nio_calls_out_total Node calls this process sent over NIO\n"
+                + "# TYPE chord_nio_calls_out_total counter\n"
+                + "chord_nio_calls_out_total " + NioTransport.shared().getCallsOut() + "\n";
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java MetricsExporter <nodeURL>");
+            return;
+        }
+        Node node = Transports.lookup(args[0]);
+        System.out.print(MetricsSnapshot.toPrometheus(Collections.singletonList(node.getMetrics())));
+    }
+}
@@ -0,0 +1,148 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Point-in-time copy of one node's metrics, as returned by Node.getMetrics(), renderable in Prometheus text format
+public class MetricsSnapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static class Metric implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String name;
+        private final String type;
+        private final String help;
+        private final double value;
+        private final double[] bounds;  // Histograms only, upper bounds without +Inf
+        private final long[] cumulativeCounts;  // Histograms only, one more than bounds
+
+        private Metric(String name, String type, String help, double value, double[] bounds, long[] cumulativeCounts) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.value = value;
+            this.bounds = bounds;
+            this.cumulativeCounts = cumulativeCounts;
+        }
+
+        public static Metric counter(String name, String help, double value) {
+            return new Metric(name, "counter", help, value, null, null);
+        }
+
+        public static Metric gauge(String name, String help, double value) {
+            return new Metric(name, "gauge", help, value, null, null);
+        }
+
+        // value is the sum of the observations
+        public static Metric histogram(String name, String help, double[] bounds, long[] cumulativeCounts, double sum) {
+            return new Metric(name, "histogram", help, sum, bounds, cumulativeCounts);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        // Counter or gauge value, or a histogram's sum
+        public double getValue() {
+            return value;
+        }
+
+        public long getCount() {
+            return cumulativeCounts == null ? 0 : cumulativeCounts[cumulativeCounts.length - 1];
+        }
+
+        // Smallest bucket bound at or above the p-th fraction of observations; +Inf past the last bound
+        public double percentile(double p) {
+            long rank = Math.max(1, (long) Math.ceil(p * getCount()));
+            for (int i = 0; i < bounds.length; i++) {
+                if (cumulativeCounts[i] >= rank) {
+                    return bounds[i];
+                }
+            }
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private final int nodeId;
+    private final String url;
+    private final List<Metric> metrics = new ArrayList<>();
+
+    public MetricsSnapshot(int nodeId, String url) {
+        this.nodeId = nodeId;
+        this.url = url;
+    }
+
+    public void add(Metric metric) {
+        metrics.add(metric);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public List<Metric> getMetrics() {
+        return metrics;
+    }
+
+    public Metric get(String name) {
+        for (Metric metric : metrics) {
+            if (metric.name.equals(name)) {
+                return metric;
+            }
+        }
+        return null;
+    }
+
+    // Samples of every node grouped under one HELP and TYPE per metric, labelled by node id and URL
+    public static String toPrometheus(Collection<MetricsSnapshot> snapshots) {
+        Map<String, List<String>> samples = new LinkedHashMap<>();
+        Map<String, Metric> families = new LinkedHashMap<>();
+        for (MetricsSnapshot snapshot : snapshots) {
+            String labels = "node=\"" + snapshot.nodeId + "\",url=\"" + escape(snapshot.url) + "\"";
+            for (Metric metric : snapshot.metrics) {
+                families.putIfAbsent(metric.name, metric);
+                List<String> lines = samples.computeIfAbsent(metric.name, n -> new ArrayList<>());
+                if (metric.bounds == null) {
+                    lines.add(metric.name + "{" + labels + "} " + number(metric.value));
+                    continue;
+                }
+                for (int i = 0; i <= metric.bounds.length; i++) {
+                    String le = i < metric.bounds.length ? number(metric.bounds[i]) : "+Inf";
+                    lines.add(metric.name + "_bucket{" + labels + ",le=\"" + le + "\"} " + metric.cumulativeCounts[i]);
+                }
+                lines.add(metric.name + "_sum{" + labels + "} " + number(metric.value));
+                lines.add(metric.name + "_count{" + labels + "} " + metric.getCount());
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        for (Metric family : families.values()) {
+            text.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (String line : samples.get(family.name)) {
+                text.append(line).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
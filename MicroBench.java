@@ -0,0 +1,194 @@
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/* Microbenchmarks for the hot paths: FNV1aHash, finger-table routing on an in-process ring, and shard store
+   get/put for both backends. JMH-style runs without JMH, which this build cannot pull in: every benchmark
+   gets warmup iterations, then measured iterations of a fixed duration, and reports the average time per
+   operation with its spread across iterations. Results go to stdout, or to --output, as a JSON array with
+   one object per benchmark, in the shape of JMH's JSON output. */
+
+public class MicroBench {
+    private static final int STORE_ENTRIES = 100_000;
+    private static final int ROUTING_NODES = 64;
+    private static final int INPUTS = 4096;  // A power of two, so benchmarks pick inputs with a mask
+
+    private static volatile long sink;
+
+    private interface Operation {
+        long run(int i) throws Exception;  // Returns something derived from the result, so it cannot be optimized away
+    }
+
+    private static class Benchmark {
+        final String name;
+        final Operation operation;
+
+        Benchmark(String name, Operation operation) {
+            this.name = name;
+            this.operation = operation;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("-h") || args[0].equals("--help"))) {
+            System.out.println("Usage: java MicroBench [--filter=<substring>] [--warmup=3] [--iterations=5] [--iteration-ms=1000]"
+                    + " [--dictionary=sample-dictionary-file.txt] [--output=<file>]");
+            return;
+        }
+        NodeConfig config = NodeConfig.parse(args, 0);
+        String filter = config.get("filter", "");
+        int warmup = config.getInt("warmup", 3);
+        int iterations = config.getInt("iterations", 5);
+        long iterationNanos = config.getLong("iteration-ms", 1000) * 1_000_000;
+        NodeLogger.configure(NodeLogger.Level.WARNING, 1, true);
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        addHashBenchmarks(benchmarks, Paths.get(config.get("dictionary", "sample-dictionary-file.txt")));
+        addStoreBenchmarks(benchmarks, "map", new MapShardStore());
+        addStoreBenchmarks(benchmarks, "offheap", new OffHeapShardStore());
+        addRoutingBenchmarks(benchmarks);
+
+        List<String> results = new ArrayList<>();
+        for (Benchmark benchmark : benchmarks) {
+            if (!benchmark.name.contains(filter)) {
+                continue;
+            }
+            for (int i = 0; i < warmup; i++) {
+                iteration(benchmark, iterationNanos);
+            }
+            double[] nanosPerOp = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                nanosPerOp[i] = iteration(benchmark, iterationNanos);
+            }
+            double mean = 0;
+            for (double value : nanosPerOp) {
+                mean += value / iterations;
+            }
+            double variance = 0;
+            for (double value : nanosPerOp) {
+                variance += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+            }
+            double error = Math.sqrt(variance);
+            System.err.printf(Locale.ROOT, "%-36s %10.1f +- %6.1f ns/op%n", benchmark.name, mean, error);
+            StringBuilder raw = new StringBuilder();
+            for (double value : nanosPerOp) {
+                raw.append(raw.length() == 0 ? "" : ",").append(String.format(Locale.ROOT, "%.3f", value));
+            }
+            results.add(String.format(Locale.ROOT,
+                    "{\"benchmark\":\"%s\",\"mode\":\"avgt\",\"warmupIterations\":%d,\"measurementIterations\":%d,"
+                            + "\"primaryMetric\":{\"score\":%.3f,\"scoreError\":%.3f,\"scoreUnit\":\"ns/op\",\"rawData\":[%s]}}",
+                    benchmark.name, warmup, iterations, mean, error, raw));
+        }
+
+        String json = "[" + String.join(",\n", results) + "]";
+        String output = config.get("output", null);
+        if (output == null) {
+            System.out.println(json);
+        } else {
+            try (Writer file = new FileWriter(output)) {
+                file.write(json);
+                file.write('\n');
+            }
+        }
+        System.exit(0);  // The routing ring's RMI exports keep the JVM alive
+    }
+
+    // Runs the operation in batches until iterationNanos have passed; returns ns per operation
+    private static double iteration(Benchmark benchmark, long iterationNanos) throws Exception {
+        Operation operation = benchmark.operation;
+        long operations = 0;
+        long accumulator = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < 1024; i++) {
+                accumulator += operation.run((int) operations + i);
+            }
+            operations += 1024;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        sink = accumulator;
+        return (double) elapsed / operations;
+    }
+
+    private static void addHashBenchmarks(List<Benchmark> benchmarks, Path dictionary) throws Exception {
+        String[] words = new String[INPUTS];
+        String[] definitions = new String[INPUTS];
+        List<String> lines = Files.exists(dictionary) ? Files.readAllLines(dictionary, StandardCharsets.UTF_8) : new ArrayList<>();
+        List<String> dictionaryWords = new ArrayList<>();
+        for (String line : lines) {
+            String[] parts = line.split(":");
+            if (parts.length >= 2) {
+                dictionaryWords.add(parts[0].trim());
+            }
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < INPUTS; i++) {
+            words[i] = dictionaryWords.isEmpty() ? "word-" + i : dictionaryWords.get(i % dictionaryWords.size());
+            StringBuilder definition = new StringBuilder();
+            while (definition.length() < 1024) {
+                definition.append("definition ").append(random.nextInt()).append(' ');
+            }
+            definitions[i] = definition.toString();
+        }
+        benchmarks.add(new Benchmark("FNV1aHash.hash32.word", i -> FNV1aHash.hash32(words[i & (INPUTS - 1)])));
+        benchmarks.add(new Benchmark("FNV1aHash.hash32.definition1k", i -> FNV1aHash.hash32(definitions[i & (INPUTS - 1)])));
+    }
+
+    private static void addStoreBenchmarks(List<Benchmark> benchmarks, String name, ShardStore store) {
+        String[] words = new String[INPUTS];
+        int[] hashes = new int[INPUTS];
+        for (int i = 0; i < STORE_ENTRIES; i++) {
+            String word = "word-" + i;
+            store.put(word, FNV1aHash.hash32(word), "definition of word " + i, 1, null);
+        }
+        Random random = new Random(2);
+        for (int i = 0; i < INPUTS; i++) {
+            words[i] = "word-" + random.nextInt(STORE_ENTRIES);
+            hashes[i] = FNV1aHash.hash32(words[i]);
+        }
+        String definition = "an updated definition";
+        benchmarks.add(new Benchmark("ShardStore." + name + ".get", i -> {
+            String found = store.get(words[i & (INPUTS - 1)], hashes[i & (INPUTS - 1)]);
+            return found == null ? 0 : found.length();
+        }));
+        benchmarks.add(new Benchmark("ShardStore." + name + ".put", i -> {
+            store.put(words[i & (INPUTS - 1)], hashes[i & (INPUTS - 1)], definition, i + 1, null);
+            return 1;
+        }));
+    }
+
+    // A converged in-process ring; nodes call each other directly, so only the routing logic is measured
+    private static void addRoutingBenchmarks(List<Benchmark> benchmarks) throws Exception {
+        List<NodeImpl> ring = new ArrayList<>();
+        for (int i = 0; i < ROUTING_NODES; i++) {
+            String url = "MicroBenchNode" + i;
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32(url), url);
+            node.join(i == 0 ? null : ring.get(0));
+            node.startMaintenance(50, 10, 100, 250, 1000);
+            ring.add(node);
+        }
+        if (MaintenanceBenchmark.awaitConvergence(ring, System.nanoTime()) < 0) {
+            System.err.println("Routing ring did not converge, routing numbers include wrong fingers");
+        }
+        for (NodeImpl node : ring) {
+            node.stopMaintenance();
+        }
+        int[] keys = new int[INPUTS];
+        Random random = new Random(3);
+        for (int i = 0; i < INPUTS; i++) {
+            keys[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        NodeImpl entry = ring.get(0);
+        benchmarks.add(new Benchmark("routing.closestPrecedingFinger", i -> System.identityHashCode(entry.closestPrecedingFinger(keys[i & (INPUTS - 1)]))));
+        benchmarks.add(new Benchmark("routing.findSuccessor." + ROUTING_NODES + "nodes",
+                i -> System.identityHashCode(entry.findSuccessor(keys[i & (INPUTS - 1)]))));
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.Random;
+
+/* Times exporting a key range (a join handoff) from a shard of growing size, once by scanning and re-hashing
+   every word as the unordered map forced us to, and once through the store's hash index. With the index the
+   cost should follow the number of keys in the range; the full scan follows the shard size.
+   Usage: java MigrationBenchmark [map|offheap] [entries...] */
+
+public class MigrationBenchmark {
+    private static final double[] RANGE_FRACTIONS = {0.001, 0.01, 0.1};
+    private static final int RANGES_PER_POINT = 20;
+
+    public static void main(String[] args) {
+        boolean offHeap = args.length > 0 && args[0].equals("offheap");
+        int first = args.length > 0 && (offHeap || args[0].equals("map")) ? 1 : 0;
+        int[] shardSizes = args.length > first ? new int[args.length - first] : new int[]{100_000, 1_000_000};
+        for (int i = first; i < args.length; i++) {
+            shardSizes[i - first] = Integer.parseInt(args[i]);
+        }
+
+        System.out.printf("%-10s %-8s %-10s %-14s %-14s%n", "shard", "range", "keys", "full scan ms", "indexed ms");
+        for (int entries : shardSizes) {
+            ShardStore store = offHeap ? new OffHeapShardStore() : new MapShardStore();
+            for (int i = 0; i < entries; i++) {
+                String word = "w" + Integer.toString(i, 36);
+                store.put(word, FNV1aHash.hash32(word), "definition " + i, 1, null);
+            }
+            for (double fraction : RANGE_FRACTIONS) {
+                run(store, entries, fraction, true);  // Warm-up
+                run(store, entries, fraction, false);
+            }
+        }
+    }
+
+    private static void run(ShardStore store, int entries, double fraction, boolean warmUp) {
+        Random random = new Random(11);
+        long width = (long) (fraction * (1L << 32));
+        long keys = 0;
+        long scanNanos = 0;
+        long indexedNanos = 0;
+        for (int r = 0; r < RANGES_PER_POINT; r++) {
+            int start = random.nextInt();
+            int end = (int) (start + width);
+            long[] count = new long[1];
+
+            long begin = System.nanoTime();
+            store.forEach((word, definition) -> {
+                if (RingRange.contains(FNV1aHash.hash32(word), start, end)) {
+                    count[0]++;
+                }
+            });
+            scanNanos += System.nanoTime() - begin;
+
+            long scanned = count[0];
+            count[0] = 0;
+            begin = System.nanoTime();
+            store.forEachInRange(start, end, (word, keyHash, definition, version) -> count[0]++);
+            indexedNanos += System.nanoTime() - begin;
+
+            if (count[0] != scanned) {
+                throw new IllegalStateException("Index returned " + count[0] + " keys, scan found " + scanned);
+            }
+            keys += count[0];
+        }
+        if (!warmUp) {
+            System.out.printf("%-10d %-8s %-10d %-14.3f %-14.3f%n", entries, fraction * 100 + "%",
+                    keys / RANGES_PER_POINT, scanNanos / 1e6 / RANGES_PER_POINT, indexedNanos / 1e6 / RANGES_PER_POINT);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// One client connection to a peer, shared by all callers. Responses are matched to requests by id,
+// so any number of requests can be in flight and complete out of order. The first frame agrees on a value codec.
+public class NioConnection {
+    private static volatile long callTimeoutMillis = 30_000;
+
+    private final SocketChannel channel;
+    private final Object writeLock = new Object();
+    private final Map<Long, PendingCall> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final LongAdder bytesOut;
+    private final ValueCodec codec;
+    private volatile boolean open = true;
+
+    private static class PendingCall {
+        final Method method;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        PendingCall(Method method) {
+            this.method = method;
+        }
+    }
+
+    public NioConnection(InetSocketAddress address, ValueCodec codec, LongAdder bytesOut) throws IOException {
+        this.channel = SocketChannel.open();
+        this.bytesOut = bytesOut;
+        channel.socket().connect(address, (int) callTimeoutMillis);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        try {
+            this.codec = hello(codec);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Thread reader = new Thread(this::readLoop, "nio-client-" + address.getPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // Offers our codec before anything else is sent; the peer answers with its id if it holds the same
+    // codebook, 0 for plain text otherwise. A peer without codecs answers with an error, also plain text.
+    // Read through the socket's streams, which honour the read timeout, so a silent peer fails like a slow call.
+    private ValueCodec hello(ValueCodec offered) throws IOException {
+        DataOutputStream out = new DataOutputStream(channel.socket().getOutputStream());
+        out.writeInt(8 + 1 + 4 + 4);
+        out.writeLong(0);
+        out.writeByte(WireProtocol.OP_HELLO);
+        out.writeInt(0);
+        out.writeInt(offered.id());
+        out.flush();
+        channel.socket().setSoTimeout((int) callTimeoutMillis);
+        try {
+            DataInputStream in = new DataInputStream(channel.socket().getInputStream());
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            ByteBuffer reply = ByteBuffer.wrap(body);
+            reply.getLong();
+            boolean agreed = reply.get() == WireProtocol.STATUS_OK && reply.remaining() >= 4 && reply.getInt() == offered.id();
+            return agreed ? offered : ValueCodec.PLAIN;
+        } catch (SocketTimeoutException e) {
+            throw new RemoteException("Timed out after " + callTimeoutMillis + "ms agreeing on a codec with " + channel.getRemoteAddress());
+        } finally {
+            channel.socket().setSoTimeout(0);
+        }
+    }
+
+    public ValueCodec getCodec() {
+        return codec;
+    }
+
+    // Bounds connecting and every call, sync or async, so a hung peer cannot hold a caller for long
+    public static void setCallTimeout(long millis) {
+        callTimeoutMillis = millis;
+    }
+
+    public Object call(int virtualNode, Method method, Object[] args) throws IOException {
+        try {
+            return send(virtualNode, method, args).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new RemoteException("Timed out after " + callTimeoutMillis + "ms calling " + method.getName());
+            }
+            throw cause instanceof IOException ? (IOException) cause : new RemoteException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted calling " + method.getName());
+        }
+    }
+
+    public CompletableFuture<Object> send(int virtualNode, Method method, Object[] args) throws IOException {
+        byte[] payload = WireProtocol.encodeArguments(method, args, codec);
+        long requestId = nextRequestId.incrementAndGet();
+        PendingCall call = new PendingCall(method);
+        pending.put(requestId, call);
+        call.future.orTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, error) -> pending.remove(requestId));
+
+        ByteBuffer frame = ByteBuffer.allocate(4 + 8 + 1 + 4 + payload.length);
+        frame.putInt(8 + 1 + 4 + payload.length).putLong(requestId).put(WireProtocol.opcode(method)).putInt(virtualNode)
+                .put(payload).flip();
+        try {
+            synchronized (writeLock) {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+            bytesOut.add(frame.limit());
+        } catch (IOException e) {
+            pending.remove(requestId);
+            close();
+            throw e;
+        }
+        return call.future;
+    }
+
+    private void readLoop() {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (open) {
+                header.clear();
+                readFully(header);
+                ByteBuffer body = ByteBuffer.allocate(header.getInt(0));
+                readFully(body);
+                body.flip();
+                long requestId = body.getLong();
+                byte status = body.get();
+                PendingCall call = pending.remove(requestId);
+                if (call == null) {
+                    continue;  // Caller already timed out
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.array(), body.position(), body.remaining()));
+                try {
+                    if (status == WireProtocol.STATUS_OK) {
+                        call.future.complete(WireProtocol.decodeResult(call.method, in, codec));
+                    } else {
+                        call.future.completeExceptionally(new ServerException(WireProtocol.readString(in)));
+                    }
+                } catch (IOException e) {
+                    call.future.completeExceptionally(e);
+                }
+            }
+        } catch (IOException e) {
+            // Peer went away, fail everything still waiting
+        } finally {
+            close();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void close() {
+        open = false;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (PendingCall call : pending.values()) {
+            call.future.completeExceptionally(new RemoteException("Connection closed"));
+        }
+        pending.clear();
+    }
+}
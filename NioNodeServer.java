@@ -0,0 +1,263 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves a host's NodeImpls, one per virtual node, on a single selector thread. Decoded requests run on a worker
+// pool (node calls may call other nodes), and responses are queued back to the selector so the socket is only touched by it.
+public class NioNodeServer {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Map<Integer, NodeImpl> nodes = new ConcurrentHashMap<>();
+    private final InetSocketAddress address;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    private final Queue<Connection> writable = new ConcurrentLinkedQueue<>();
+    private volatile ValueCodec codec = ValueCodec.PLAIN;
+    private volatile boolean running = true;
+
+    private static class Connection {
+        final SocketChannel channel;
+        final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        ByteBuffer inbound = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        SelectionKey key;
+        volatile ValueCodec codec = ValueCodec.PLAIN;  // Until the client's hello agrees on ours
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public NioNodeServer(InetSocketAddress address) throws IOException {
+        this.address = address;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "nio-worker-" + address.getPort());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void serve(int virtualIndex, NodeImpl node) {
+        nodes.put(virtualIndex, node);
+    }
+
+    // Offered to connections opened from now on
+    public void setValueCodec(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    public void start() {
+        new Thread(this::selectLoop, "nio-selector-" + address.getPort()).start();
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+        workers.shutdownNow();
+    }
+
+    private void selectLoop() {
+        try {
+            while (running) {
+                selector.select();
+                Connection ready;
+                while ((ready = writable.poll()) != null) {
+                    flush(ready);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("NIO server on " + address + " stopped: " + e.getMessage());
+        } finally {
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(Connection connection) {
+        try {
+            if (connection.channel.read(connection.inbound) < 0) {
+                closeConnection(connection);
+                return;
+            }
+        } catch (IOException e) {
+            closeConnection(connection);
+            return;
+        }
+        ByteBuffer buffer = connection.inbound;
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (buffer.remaining() < 4 + length) {
+                break;
+            }
+            buffer.getInt();
+            byte[] frame = new byte[length];
+            buffer.get(frame);
+            workers.execute(() -> handle(connection, frame));
+        }
+        buffer.compact();
+        if (buffer.position() >= 4 && buffer.getInt(0) + 4 > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.getInt(0) + 4);  // Frame bigger than the buffer
+            buffer.flip();
+            larger.put(buffer);
+            connection.inbound = larger;
+        }
+    }
+
+    private void handle(Connection connection, byte[] frame) {
+        ByteBuffer request = ByteBuffer.wrap(frame);
+        long requestId = request.getLong();
+        byte opcode = request.get();
+        int virtualIndex = request.getInt();
+        byte status = WireProtocol.STATUS_OK;
+        byte[] payload;
+        try {
+            if (opcode == WireProtocol.OP_HELLO) {
+                payload = hello(connection, request.getInt());
+                respond(connection, requestId, status, payload);
+                return;
+            }
+            NodeImpl node = nodes.get(virtualIndex);
+            if (node == null) {
+                throw new IOException("No virtual node " + virtualIndex + " at " + address);
+            }
+            node.getNodeMetrics().recordRpcIn();
+            Method method = WireProtocol.method(opcode);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame, request.position(), request.remaining()));
+            Object result = method.invoke(node, WireProtocol.decodeArguments(method, in, connection.codec));
+            payload = WireProtocol.encodeResult(method, result, connection.codec);
+        } catch (Exception e) {
+            Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+            status = WireProtocol.STATUS_ERROR;
+            payload = errorPayload(cause);
+        }
+        respond(connection, requestId, status, payload);
+    }
+
+    // The client waits for the answer before sending anything else, so later requests all see the agreed codec
+    private byte[] hello(Connection connection, int offeredId) {
+        ValueCodec local = codec;
+        connection.codec = offeredId == local.id() ? local : ValueCodec.PLAIN;
+        return ByteBuffer.allocate(4).putInt(connection.codec.id()).array();
+    }
+
+    private void respond(Connection connection, long requestId, byte status, byte[] payload) {
+        ByteBuffer response = ByteBuffer.allocate(4 + 8 + 1 + payload.length);
+        response.putInt(8 + 1 + payload.length).putLong(requestId).put(status).put(payload).flip();
+        synchronized (connection) {
+            if (connection.outbound.isEmpty()) {
+                try {
+                    connection.channel.write(response);  // Common case: write straight from the worker
+                } catch (IOException e) {
+                    return;  // Selector notices the broken connection on its next read
+                }
+                if (!response.hasRemaining()) {
+                    return;
+                }
+            }
+            connection.outbound.add(response);
+        }
+        writable.add(connection);  // Socket buffer full, let the selector finish the write
+        selector.wakeup();
+    }
+
+    private static byte[] errorPayload(Throwable cause) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            WireProtocol.writeString(out, cause.getClass().getSimpleName() + ": " + cause.getMessage());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            return new byte[4];
+        }
+    }
+
+    private void flush(Connection connection) {
+        synchronized (connection) {
+            if (!connection.key.isValid()) {
+                connection.outbound.clear();
+                return;
+            }
+            try {
+                ByteBuffer next;
+                while ((next = connection.outbound.peek()) != null) {
+                    connection.channel.write(next);
+                    if (next.hasRemaining()) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);  // Socket buffer full
+                        return;
+                    }
+                    connection.outbound.poll();
+                }
+                connection.key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    private void closeConnection(Connection connection) {
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
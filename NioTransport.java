@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Transport over non-blocking sockets with the WireProtocol binary format. Each host listens on the port in
+   its nio://host:port URL and serves its virtual nodes, nio://host:port/v<index>, on that same port; callers
+   share one multiplexed connection per host with many requests in flight. A connection encodes definitions and
+   other strings with the transport's ValueCodec when both ends hold the same one, plain UTF-8 otherwise. */
+
+public class NioTransport implements NodeTransport {
+    public static final String SCHEME = "nio://";
+    private static final NioTransport SHARED = new NioTransport();
+
+    private final Map<String, NioNodeServer> servers = new ConcurrentHashMap<>();
+    private final Map<String, Node> proxies = new ConcurrentHashMap<>();
+    private final Map<String, NioConnection> connections = new ConcurrentHashMap<>();
+    private final Map<String, Object> connecting = new ConcurrentHashMap<>();  // One lock per host
+    private final LongAdder callsOut = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private volatile ValueCodec codec = ValueCodec.PLAIN;
+
+    public static NioTransport shared() {
+        return SHARED;
+    }
+
+    @Override
+    public void export(NodeImpl node) throws IOException {
+        String url = node.getURL();
+        synchronized (servers) {
+            NioNodeServer server = servers.get(authorityOf(url));
+            if (server == null) {
+                server = new NioNodeServer(addressOf(url));
+                server.setValueCodec(codec);
+                server.start();
+                servers.put(authorityOf(url), server);
+            }
+            server.serve(virtualIndexOf(url), node);
+        }
+    }
+
+    @Override
+    public Node lookup(String url) throws IOException {
+        return proxies.computeIfAbsent(url, u -> (Node) Proxy.newProxyInstance(
+                Node.class.getClassLoader(), new Class<?>[]{Node.class}, new RemoteNodeHandler(u)));
+    }
+
+    @Override
+    public String nodeURL(int id, int port) {
+        return SCHEME + "localhost:" + port;
+    }
+
+    @Override
+    public String virtualNodeURL(int id, int port, int index) {
+        return index == 0 ? nodeURL(id, port) : nodeURL(id, port) + "/v" + index;
+    }
+
+    @Override
+    public void close() {
+        for (NioNodeServer server : servers.values()) {
+            server.close();
+        }
+        for (NioConnection connection : connections.values()) {
+            connection.close();
+        }
+        servers.clear();
+        connections.clear();
+    }
+
+    public static boolean isNioNode(Node node) {
+        return Proxy.isProxyClass(node.getClass()) && Proxy.getInvocationHandler(node) instanceof RemoteNodeHandler;
+    }
+
+    // Node calls this process has sent to NIO nodes, including ones to its own nodes
+    public long getCallsOut() {
+        return callsOut.sum();
+    }
+
+    // Offered by connections and servers opened after this call; set it before exporting or calling nodes
+    public void setValueCodec(ValueCodec codec) {
+        this.codec = codec;
+    }
+
+    public ValueCodec getValueCodec() {
+        return codec;
+    }
+
+    // Request frame bytes this process has sent, hellos excluded
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    // Sends the request and returns right away; the caller's thread is not parked while it is in flight
+    public CompletableFuture<Object> invokeAsync(Node node, Method method, Object[] args) {
+        RemoteNodeHandler handler = (RemoteNodeHandler) Proxy.getInvocationHandler(node);
+        String url = handler.url;
+        callsOut.increment();
+        try {
+            return connection(url).send(handler.virtualIndex, method, args);
+        } catch (IOException e) {
+            CompletableFuture<Object> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new RemoteException("Call to " + url + " failed", e));
+            return failed;
+        }
+    }
+
+    // Virtual nodes of one host share its connection. Opening one is bounded by the call timeout and only
+    // holds up other callers of the same host.
+    NioConnection connection(String url) throws IOException {
+        String host = authorityOf(url);
+        NioConnection connection = connections.get(host);
+        if (connection != null && connection.isOpen()) {
+            return connection;
+        }
+        synchronized (connecting.computeIfAbsent(host, h -> new Object())) {
+            connection = connections.get(host);
+            if (connection == null || !connection.isOpen()) {
+                connection = new NioConnection(addressOf(url), codec, bytesOut);  // Reconnect after a peer restart
+                connections.put(host, connection);
+            }
+            return connection;
+        }
+    }
+
+    static InetSocketAddress addressOf(String url) {
+        URI uri = URI.create(url);
+        return new InetSocketAddress(uri.getHost(), uri.getPort());
+    }
+
+    private static String authorityOf(String url) {
+        return URI.create(url).getAuthority();
+    }
+
+    static int virtualIndexOf(String url) {
+        String path = URI.create(url).getPath();
+        return path == null || !path.startsWith("/v") ? 0 : Integer.parseInt(path.substring(2));
+    }
+
+    // Client-side stub: every Node call becomes one request frame on the shared connection
+    private class RemoteNodeHandler implements InvocationHandler {
+        private final String url;
+        private final int virtualIndex;
+
+        RemoteNodeHandler(String url) {
+            this.url = url;
+            this.virtualIndex = virtualIndexOf(url);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getURL":
+                    return url;
+                case "equals":
+                    return args[0] instanceof Node && isNioNode((Node) args[0])
+                            && url.equals(((RemoteNodeHandler) Proxy.getInvocationHandler(args[0])).url);
+                case "hashCode":
+                    return url.hashCode();
+                case "toString":
+                    return "NioNode[" + url + "]";
+                default:
+                    break;
+            }
+            callsOut.increment();
+            try {
+                return connection(url).call(virtualIndex, method, args == null ? new Object[0] : args);
+            } catch (IOException e) {
+                throw e instanceof RemoteException ? e : new RemoteException("Call to " + url + " failed", e);
+            }
+        }
+    }
+}
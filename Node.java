@@ -3,6 +3,9 @@
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public interface Node extends Remote {
@@ -18,22 +21,91 @@ public interface Node extends Remote {
 
     Node findSuccessor(int key) throws RemoteException;
 
+    public RouteHop nextHop(int key) throws RemoteException;
+
+    public RouteHop nextHopAvoiding(int key, NodeRef unreachable) throws RemoteException;
+
+    public RoutingStats getRoutingStats() throws RemoteException;
+
+    public MetricsSnapshot getMetrics() throws RemoteException;
+
+    public NodeState getState() throws RemoteException;
+
     public void setSuccessor(Node node) throws RemoteException;
 
-    public boolean acquireJoinLock(String nodeURL) throws RemoteException;
+    public NodeRef admitPredecessor(NodeRef joiner) throws RemoteException;
 
-    public boolean releaseJoinLock(String nodeURL) throws RemoteException;
+    public boolean casSuccessor(NodeRef expected, NodeRef update) throws RemoteException;
 
     public void setDictionary(String word, String definition) throws RemoteException;
 
+    public void setDictionary(HashedKey key, String definition) throws RemoteException;
+
+    // The whole shard in one response; scanRange pages through it instead
     public ConcurrentHashMap<String, String> getDictionary() throws RemoteException;
 
+    public ScanPage scanRange(int after, int end, String prefix, int limit) throws RemoteException;
+
     public Node insert(String word, String definition) throws RemoteException;
 
     public Node insert(String word) throws RemoteException;
 
     public String lookup(String word) throws RemoteException;
 
+    public String lookup(HashedKey key) throws RemoteException;
+
+    public CachedRead readForCache(HashedKey key, NodeRef reader) throws RemoteException;
+
+    public void invalidate(List<String> words) throws RemoteException;
+
+    public CacheStats getCacheStats() throws RemoteException;
+
+    public int insertAll(Map<String, String> entries) throws RemoteException;
+
+    public int insertAll(HashedEntries entries) throws RemoteException;
+
+    public List<String> lookupAll(Collection<String> words) throws RemoteException;
+
+    public void setDictionaryAll(Map<String, String> entries) throws RemoteException;
+
+    public void setDictionaryAll(HashedEntries entries) throws RemoteException;
+
+    public List<String> lookupLocal(List<String> words) throws RemoteException;
+
+    public OwnedResult lookupIfOwner(HashedKey key) throws RemoteException;
+
+    // As lookupIfOwner, but answered by any of the key's replicas
+    public OwnedResult lookupIfReplica(HashedKey key) throws RemoteException;
+
+    public boolean insertIfOwner(HashedKey key, String definition) throws RemoteException;
+
+    // Versioned access, atomic at the word's owner. Version 0 stands for an absent word, and a null definition
+    // in compareAndSet removes the word. On a mismatch the result holds the current definition and version.
+    public VersionedValue lookupVersioned(String word) throws RemoteException;
+
+    public CasResult putIfAbsent(String word, String definition) throws RemoteException;
+
+    public CasResult compareAndSet(String word, long expectedVersion, String definition) throws RemoteException;
+
+    public CasResult removeIfVersion(String word, long expectedVersion) throws RemoteException;
+
+    // Owner side of the above; null if this node does not own the key
+    public VersionedValue lookupVersionedIfOwner(HashedKey key) throws RemoteException;
+
+    public CasResult casIfOwner(HashedKey key, long expectedVersion, String definition) throws RemoteException;
+
+    public NodeRef successorRef() throws RemoteException;
+
+    public NodeRef predecessorRef() throws RemoteException;
+
+    public List<NodeRef> getSuccessorList() throws RemoteException;
+
+    public void notifyPredecessor(NodeRef candidate) throws RemoteException;
+
+    public MaintenanceStats getMaintenanceStats() throws RemoteException;
+
+    public List<NodeRef> getRingMembers() throws RemoteException;
+
     public String printFingerTable() throws RemoteException;
 
     public String printDictionary() throws RemoteException;
@@ -46,8 +118,21 @@ public interface Node extends Remote {
 
     public void updateOthers() throws RemoteException;
 
-    public void updateFingerTable(int i) throws RemoteException;
+    public void updateFingerTable(NodeRef s, int i) throws RemoteException;
+
+    public void replaceFinger(NodeRef leaving, NodeRef replacement) throws RemoteException;
+
+    public void leave() throws RemoteException;
+
+    public int transferRange(int start, int end, Node target, int chunkSize) throws RemoteException;
+
+    public void receiveRange(HashedEntries chunk) throws RemoteException;
+
     public boolean remove(String word) throws RemoteException;
 
+    public void storeReplicas(HashedEntries entries) throws RemoteException;
+
+    public boolean removeReplica(HashedKey key) throws RemoteException;
+
     int getDictionarySize() throws RemoteException;
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Optional --key=value flags passed to Main after <nodeID> <port>
+public class NodeConfig {
+    private final Map<String, String> options = new HashMap<>();
+
+    public static NodeConfig parse(String[] args, int from) {
+        NodeConfig config = new NodeConfig();
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            config.options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return config;
+    }
+
+    public String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    // rmi (default) or nio
+    public String transport() {
+        return get("transport", "rmi");
+    }
+}
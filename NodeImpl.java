@@ -1,147 +1,1236 @@
+import java.io.IOException;
 import java.io.Serializable;
 import java.rmi.RemoteException;
+import java.rmi.ServerException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
 
 public class NodeImpl extends UnicastRemoteObject implements Node, Serializable {
     private static final long serialVersionUID = 1L;
-    private boolean joinLock;
-    private static final int NUM_FINGERS = 31;
-    private Node successor;
-    private Node predecessor;
-    private final ConcurrentHashMap<Integer, Node> fingerTable;
-    private final ConcurrentHashMap<String, String> dictionary;
+    static final int NUM_FINGERS = 31;
+    private static final long RING_SIZE = 1L << NUM_FINGERS;
+    private static final int MAX_ROUTE_HOPS = 256;
+    private static final int MAX_RING_WALK = 65536;
+    private static final int MAX_SCAN_PAGE = 10_000;  // Words examined per scan page, whatever the caller asks for
+    private static final int TRANSFER_CHUNK_SIZE = 1000;
+    private static final String DEFINITION_NOT_FOUND = "Definition not found.";
+    private static final long REPLICA_TARGETS_TTL_MS = 1000;
+    private static final int MIN_SUCCESSOR_LIST_SIZE = 4;
+    private static final int MAX_FAILOVER_ATTEMPTS = 3;
+    private static final long JOIN_RETRY_MIN_MS = 10;
+    private static final long JOIN_RETRY_MAX_MS = 500;
+    private static final long JOIN_TIMEOUT_MS = 60_000;
+    private static final int LINK_ATTEMPTS = 50;
+    private static final int MAX_TRACKED_CACHED_WORDS = 100_000;
+    private static final int MAX_OWNER_ATTEMPTS = 50;  // Conditional writes retried while no node claims the key
+    // One clock per process: virtual nodes of a host share a store, and must not hand out the same version twice
+    private static final VersionClock VERSION_CLOCK = new VersionClock();
+
+    // Joins and notifies change the neighbour pointers with compare-and-set instead of a ring-wide lock
+    private static final AtomicReferenceFieldUpdater<NodeImpl, NodeRef> SUCCESSOR =
+            AtomicReferenceFieldUpdater.newUpdater(NodeImpl.class, NodeRef.class, "successor");
+    private static final AtomicReferenceFieldUpdater<NodeImpl, NodeRef> PREDECESSOR =
+            AtomicReferenceFieldUpdater.newUpdater(NodeImpl.class, NodeRef.class, "predecessor");
+
+    private static class PendingTransfer {
+        final int start;
+        final int end;
+        final NodeRef source;
+
+        PendingTransfer(int start, int end, NodeRef source) {
+            this.start = start;
+            this.end = end;
+            this.source = source;
+        }
+    }
+    private volatile NodeRef successor;
+    private volatile NodeRef predecessor;
+    private final ConcurrentHashMap<Integer, NodeRef> fingerTable;
+    private final ShardStore dictionary;
     private final int id;
     private final String url;
+    private final String host;  // Virtual nodes of one host share its store
+    private final NodeRef self;
     private final NodeLogger nodeLogger;
+    private volatile RoutingMode routingMode = RoutingMode.ITERATIVE;
+    private volatile WriteAheadLog writeAheadLog;
+    private volatile PendingTransfer pendingTransfer;
+    private final Set<String> transferTombstones = ConcurrentHashMap.newKeySet();
+    private volatile int replicationFactor = 1;
+    private volatile ConsistencyLevel readConsistency = ConsistencyLevel.ONE;
+    private volatile ConsistencyLevel writeConsistency = ConsistencyLevel.QUORUM;
+    private volatile List<NodeRef> replicaTargets = Collections.emptyList();
+    private volatile long replicaTargetsRefreshedAt;
+    private volatile int replicaRangeStart = -1;  // We hold (replicaRangeStart, id]; refreshed by stabilize and on a miss
+    private volatile RingMaintenance maintenance;
+    private int nextFingerToFix;  // Only used by the maintenance thread
+    private volatile List<NodeRef> successorList = Collections.emptyList();
+    private volatile FailureDetector failureDetector = new FailureDetector(1000);
+    private volatile NodeRef leavingTo;
+    private volatile int joinAttempts;
+    private volatile boolean joined;  // Holds its whole range; until then it admits no joiners of its own
+    private volatile ReadCache readCache;
+    private volatile WritePipeline writePipeline;
+    // Owner side: nodes that may hold a cached copy of each of our words, told to drop it on the next write
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, NodeRef>> cachedBy = new ConcurrentHashMap<>();
+
+    private interface OwnerCall<T> {
+        T apply(NodeRef owner) throws RemoteException;
+    }
+    private final LongAdder routedLookups = new LongAdder();
+    private final LongAdder routedHops = new LongAdder();
+    private final LongAdder routedRpcs = new LongAdder();
+    private final NodeMetrics metrics = new NodeMetrics();
+    private final LongAdder casApplied = new LongAdder();
+    private final LongAdder casConflicts = new LongAdder();
 
 
     public NodeImpl(int id, String url) throws RemoteException {
+        this(id, url, new MapShardStore());
+    }
+
+    public NodeImpl(int id, String url, ShardStore dictionary) throws RemoteException {
         super();
         this.id = id;
         this.url = url;
-        this.dictionary = new ConcurrentHashMap<>();
+        this.host = VirtualHost.hostOf(url);
+        this.self = new NodeRef(this, id, url);
+        this.dictionary = dictionary;
         this.fingerTable = new ConcurrentHashMap<>(NUM_FINGERS);
-        this.predecessor = this;
-        this.successor = this;
+        this.predecessor = self;
+        this.successor = self;
         this.nodeLogger = new NodeLogger(id);
         nodeLogger.logInfo("Node " + id + " initialized at URL " + url);
 
 
     }
 
-    private void initFingerTable() throws RemoteException {
-        for (int i = 0; i < NUM_FINGERS; i++) {
-            int fingerStart = (id + (1 << i)) % NUM_FINGERS;
-            Node fingerNode = findSuccessor(fingerStart);
-            fingerTable.put(i, fingerNode);
+    public void setRoutingMode(RoutingMode routingMode) {
+        this.routingMode = routingMode;
+    }
+
+    // Every key is also kept on the next replicationFactor - 1 successors of its owner
+    public void setReplication(int replicationFactor, ConsistencyLevel readConsistency, ConsistencyLevel writeConsistency) {
+        this.replicationFactor = replicationFactor;
+        this.readConsistency = readConsistency;
+        this.writeConsistency = writeConsistency;
+        this.replicaTargetsRefreshedAt = 0;
+    }
+
+    // Caches up to maxEntries definitions of words owned by other nodes for ttlMillis, plus their owners' locations;
+    // maxEntries 0 turns the cache off
+    public void setReadCache(int maxEntries, long ttlMillis) {
+        this.readCache = maxEntries > 0 ? new ReadCache(maxEntries, ttlMillis) : null;
+    }
+
+    // Coalesces concurrent setDictionary calls into batches of up to maxBatch words, applied and replicated like
+    // setDictionaryAll; a batch waits at most maxDelayMicros for more writes. maxBatch 1 applies every write alone.
+    public void setWritePipeline(int maxBatch, long maxDelayMicros) {
+        WritePipeline previous = writePipeline;
+        writePipeline = maxBatch > 1 ? new WritePipeline(url, this::setDictionaryAll, maxBatch, maxDelayMicros) : null;
+        if (previous != null) {
+            previous.close();
         }
     }
 
+    // Runs stabilize, fix_fingers, check_predecessor and heartbeats in the background; call after join().
+    // A neighbour that misses two heartbeat intervals is suspected and routed around.
+    public void startMaintenance(long stabilizeMillis, long fixFingersMillis, long checkPredecessorMillis,
+                                 long heartbeatMillis, long maxBackoffMillis) {
+        this.failureDetector = new FailureDetector(2 * heartbeatMillis);
+        RingMaintenance started = new RingMaintenance(this, id, nodeLogger, stabilizeMillis, fixFingersMillis,
+                checkPredecessorMillis, heartbeatMillis, maxBackoffMillis);
+        this.maintenance = started;
+        started.start();
+    }
+
+    public void stopMaintenance() {
+        RingMaintenance running = maintenance;
+        if (running != null) {
+            running.stop();
+        }
+    }
+
+    // Restores the shard from the log's snapshot and segments, then makes every later write durable
+    public void attachLog(WriteAheadLog log) throws IOException {
+        long start = System.nanoTime();
+        long recovered = log.recover(dictionary);
+        this.writeAheadLog = log;
+        String message = String.format("Recovered %d words from the write-ahead log in %.1f ms", recovered, (System.nanoTime() - start) / 1e6);
+        System.out.println(message);
+        nodeLogger.logInfo(message);
+    }
+
+    // For the other virtual nodes of a host: the store is shared and already recovered, only later writes are logged
+    public void shareLog(WriteAheadLog log) {
+        this.writeAheadLog = log;
+    }
+
     @Override
     public Node findPredecessor(int key) throws RemoteException {
-        Node n = this;
-        while (key < n.getID() || key > n.successor().getID()) {
-            n = n.closestPrecedingFinger(key);
+        return findPredecessorRef(key).getNode();
+    }
+
+    private NodeRef findPredecessorRef(int key) throws RemoteException {
+        if (ownsKey(key)) {
+            return predecessor;  // nextHop answers our own keys with ourselves, the node before them is our predecessor
+        }
+        NodeRef current = self;
+        RouteHop hop = nextHop(key);
+        int hops = 0;
+        while (!hop.isOwner() && hops < MAX_ROUTE_HOPS) {
+            current = hop.getNext();
+            hop = current.getNode().nextHop(key);
+            hops++;
         }
-        return n;
+        return current;
     }
 
 
     @Override
     public Node closestPrecedingFinger(int keyHash) throws RemoteException {
+        NodeRef f = closestPrecedingRef(keyHash);
+        if (f.getId() != id) {
+            nodeLogger.logTrace(keyHash, () -> "Closest preceding finger found: Node " + f.getId() + " for key " + keyHash);
+        }
+        return f.getNode();
+    }
+
+    private NodeRef closestPrecedingRef(int keyHash) {
         for (int i = NUM_FINGERS - 1; i >= 0; i--) {
-            Node f = fingerTable.get(i);
-            if (f != null && f.getID() > this.getID() && f.getID() < keyHash) {
-                nodeLogger.logInfo("Closest preceding finger found: Node " + f.getID() + " for key " + keyHash);
+            NodeRef f = fingerTable.get(i);
+            if (f != null && isInOpenRange(f.getId(), id, keyHash) && !failureDetector.isSuspected(f.getId())) {
                 return f;
             }
         }
-        return this; // Fallback to this node if no closer node is found
+        NodeRef succ = liveSuccessor();
+        if (isInOpenRange(succ.getId(), id, keyHash)) {
+            return succ;
+        }
+        return self; // Fallback to this node if no closer node is found
+    }
+
+    @Override
+    public RouteHop nextHop(int key) throws RemoteException {
+        NodeRef succ = liveSuccessor();
+        if (ownsKey(key)) {
+            return new RouteHop(self, true);
+        }
+        if (succ.getId() == id || isInHalfOpenRange(key, id, succ.getId())) {
+            return new RouteHop(succ, true);
+        }
+        NodeRef next = closestPrecedingRef(key);
+        if (next.getId() == id) {
+            next = succ; // No finger strictly between us and the key, step to the successor
+        }
+        return new RouteHop(next, false);
+    }
+
+    // A caller could not reach a node we routed it to; stop using that node and answer again
+    @Override
+    public RouteHop nextHopAvoiding(int key, NodeRef unreachable) throws RemoteException {
+        if (unreachable.getId() != id) {
+            failureDetector.suspect(unreachable);
+        }
+        return nextHop(key);
+    }
+
+    // The first successor the failure detector does not suspect; dead nodes' ranges fall to it
+    private NodeRef liveSuccessor() {
+        NodeRef succ = successor;
+        if (!failureDetector.isSuspected(succ.getId())) {
+            return succ;
+        }
+        for (NodeRef candidate : successorList) {
+            if (candidate.getId() != id && !failureDetector.isSuspected(candidate.getId())) {
+                return candidate;
+            }
+        }
+        return succ;
+    }
+
+    @Override
+    public RoutingStats getRoutingStats() throws RemoteException {
+        return new RoutingStats(routedLookups.sum(), routedHops.sum(), routedRpcs.sum());
+    }
+
+    // Request metrics plus routing, shard, transfer, cache and maintenance stats, one family per number
+    @Override
+    public MetricsSnapshot getMetrics() throws RemoteException {
+        MetricsSnapshot snapshot = new MetricsSnapshot(id, url);
+        metrics.addTo(snapshot);
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_routed_lookups_total", "Lookups routed from this node", routedLookups.sum()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_routed_hops_total", "Hops taken by lookups routed from this node", routedHops.sum()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_routing_rpcs_total", "Routing calls sent by lookups routed from this node", routedRpcs.sum()));
+        // The store is shared by the virtual nodes of one host, so these repeat across them
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cas_applied_total", "Conditional writes applied by this node as owner", casApplied.sum()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cas_conflicts_total", "Conditional writes refused for a version mismatch", casConflicts.sum()));
+        WritePipeline pipeline = writePipeline;
+        if (pipeline != null) {
+            snapshot.add(MetricsSnapshot.Metric.counter("chord_write_batches_total", "Batches applied by the write pipeline", pipeline.getBatches()));
+            snapshot.add(MetricsSnapshot.Metric.counter("chord_write_batched_words_total", "Writes applied through the write pipeline", pipeline.getWrites()));
+        }
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_shard_words", "Words in this node's shard store", dictionary.size()));
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_shard_bytes", "Bytes held by this node's shard store", dictionary.bytes()));
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_transfer_in_progress", "1 while a join pulls its range or a leave hands it off",
+                pendingTransfer != null || leavingTo != null ? 1 : 0));
+        CacheStats cache = getCacheStats();
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_hits_total", "Lookups answered from the read cache", cache.getHits()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_misses_total", "Lookups the read cache could not answer", cache.getMisses()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_evictions_total", "Read cache entries evicted for space", cache.getEvictions()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_expirations_total", "Read cache entries dropped by their TTL", cache.getExpirations()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_invalidations_total", "Read cache entries dropped by an owner's write", cache.getInvalidations()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_location_hits_total", "Lookups sent straight to a cached owner", cache.getLocationHits()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_cache_location_misses_total", "Lookups with no cached owner", cache.getLocationMisses()));
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_cache_entries", "Definitions in the read cache", cache.getEntries()));
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_cache_bytes", "Bytes held by the read cache", cache.getBytes()));
+        MaintenanceStats maintenanceStats = getMaintenanceStats();
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_maintenance_changes_total", "Pointer changes made by stabilization", maintenanceStats.getChanges()));
+        snapshot.add(MetricsSnapshot.Metric.gauge("chord_ring_converged", "1 once maintenance has seen no pointer change for a while",
+                maintenanceStats.isConverged() ? 1 : 0));
+        return snapshot;
+    }
+
+    // Pointers by id plus the refs needed to reach the neighbours, so an inspector can fan out from any node.
+    // Counting the owned words walks that range of the store, through the key-hash index on the map store.
+    @Override
+    public NodeState getState() throws RemoteException {
+        NodeRef pred = predecessor;
+        int[] fingerIds = new int[NUM_FINGERS];
+        Map<Integer, NodeRef> neighbours = new LinkedHashMap<>();
+        for (int i = 0; i < NUM_FINGERS; i++) {
+            NodeRef finger = fingerTable.getOrDefault(i, self);  // Empty before join
+            fingerIds[i] = finger.getId();
+            neighbours.putIfAbsent(finger.getId(), finger);
+        }
+        for (NodeRef next : successorList) {
+            neighbours.putIfAbsent(next.getId(), next);
+        }
+        neighbours.putIfAbsent(pred.getId(), pred);
+        neighbours.remove(id);
+        long[] owned = new long[1];
+        dictionary.forEachInRange(pred.getId(), id, (word, keyHash, definition, version) -> owned[0]++);
+        return new NodeState(id, url, pred.getId(), successor.getId(), fingerIds, new ArrayList<>(neighbours.values()),
+                owned[0], dictionary.size(), dictionary.bytes());
+    }
+
+    // For in-process instrumentation, e.g. a transport counting the calls it serves
+    public NodeMetrics getNodeMetrics() {
+        return metrics;
     }
 
     @Override
     public Node successor() throws RemoteException {
-        return this.successor != null ? this.successor : this; // return this if successor is null
+        return this.successor.getNode();
     }
 
     @Override
     public Node predecessor() throws RemoteException {
-        return this.predecessor;
+        return this.predecessor.getNode();
     }
 
+    // Join admission: the joiner gets (predecessor, joiner] only while it still sits between our predecessor
+    // and us. The compare-and-set orders joins into our range; joins into other ranges never touch this node.
+    // A node still pulling its own range refuses, or the joiner would pull keys we have not received yet.
+    // Returns the predecessor it replaced, or null if the joiner has to look up its successor again.
     @Override
-    public boolean acquireJoinLock(String nodeURL) throws RemoteException {
-        if (!joinLock) {
-            joinLock = true;
-            return true;
+    public NodeRef admitPredecessor(NodeRef joiner) throws RemoteException {
+        while (true) {
+            NodeRef pred = predecessor;
+            if (!joined || joiner.getId() == id || joiner.getId() == pred.getId()
+                    || (pred.getId() != id && !isInOpenRange(joiner.getId(), pred.getId(), id))) {
+                return null;
+            }
+            if (PREDECESSOR.compareAndSet(this, pred, joiner)) {
+                nodeLogger.logInfo("Admitted Node " + joiner.getId() + " as predecessor in place of Node " + pred.getId());
+                pointersChanged();
+                return pred;
+            }
         }
-        return false;
     }
 
+    // Replaces our successor only if it is still the expected node (compared by id)
     @Override
-    public boolean releaseJoinLock(String nodeURL) throws RemoteException {
-        if (joinLock) {
-            joinLock = false;
-            return true;
+    public boolean casSuccessor(NodeRef expected, NodeRef update) throws RemoteException {
+        NodeRef replacement = update.getId() == id ? self : update;
+        while (true) {
+            NodeRef current = successor;
+            if (current.getId() != expected.getId()) {
+                return false;
+            }
+            if (SUCCESSOR.compareAndSet(this, current, replacement)) {
+                fingerTable.put(0, replacement);
+                pointersChanged();
+                return true;
+            }
         }
-        return false;
     }
 
     @Override
     public boolean remove(String word) throws RemoteException {
-        return this.dictionary.remove(word, this.dictionary.get(word));
+        HashedKey key = HashedKey.of(word);
+        boolean removed = removeLocal(key);
+        invalidateCachedCopies(Collections.singletonList(word));
+        removeReplicas(key);
+        return removed;
+    }
+
+    private void removeReplicas(HashedKey key) throws RemoteException {
+        List<NodeRef> targets = replicaTargets();
+        if (!targets.isEmpty()) {
+            List<CompletableFuture<Boolean>> calls = new ArrayList<>(targets.size());
+            for (NodeRef target : targets) {
+                calls.add(AsyncNode.of(target.getNode()).removeReplica(key));
+            }
+            awaitReplicas(calls, "Remove of '" + key.getWord() + "'");
+        }
+        NodeRef handoff = leavingTo;
+        if (handoff != null) {
+            handoff.getNode().removeReplica(key);
+        }
+    }
+
+    @Override
+    public boolean removeReplica(HashedKey key) throws RemoteException {
+        return removeLocal(key);
+    }
+
+    private boolean removeLocal(HashedKey key) throws RemoteException {
+        String word = key.getWord();
+        int keyHash = key.getHash();
+        PendingTransfer pending = pendingTransfer;
+        if (pending != null && RingRange.contains(keyHash, pending.start, pending.end)) {
+            transferTombstones.add(word);  // Keep a copy still in flight from resurrecting it
+        }
+        WriteAheadLog log = writeAheadLog;
+        List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+        boolean removed = dictionary.remove(word, keyHash, log == null ? null : () -> durable.add(log.appendRemove(word)));
+        if (!durable.isEmpty()) {
+            awaitDurable(durable.get(0));
+        }
+        return removed;
     }
 
     @Override
     public void setDictionary(String word, String definition) throws RemoteException {
-        dictionary.put(word, definition);
-        nodeLogger.logInfo("Word '" + word + "' with definition '" + definition + "' added to the dictionary on Node " + id);
+        setDictionary(HashedKey.of(word), definition);
+    }
+
+    @Override
+    public void setDictionary(HashedKey key, String definition) throws RemoteException {
+        String word = key.getWord();
+        WritePipeline pipeline = writePipeline;
+        if (pipeline != null) {
+            try {
+                pipeline.submit(word, key.getHash(), definition).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RemoteException ? (RemoteException) e.getCause() : new RemoteException("Write of '" + word + "' failed", e.getCause());
+            }
+        } else {
+            long version = store(word, key.getHash(), definition);
+            invalidateCachedCopies(Collections.singletonList(word));
+            replicate(HashedEntries.of(word, key.getHash(), definition, version));
+        }
+        nodeLogger.logTrace(key.getHash(), () -> "Word '" + word + "' with definition '" + definition + "' added to the dictionary on Node " + id);
     }
 
     @Override
     public ConcurrentHashMap<String, String> getDictionary() throws RemoteException {
-        return dictionary;
+        ConcurrentHashMap<String, String> copy = new ConcurrentHashMap<>();
+        dictionary.forEach((word, definition) -> {
+            if (definition != null) {
+                copy.put(word, definition);
+            }
+        });
+        return copy;
     }
 
     @Override
     public Node insert(String word, String definition) throws RemoteException {
-        int key = hash32(word); // Compute hash of the word
-        Node successorNode = findSuccessor(key); // Find the successor node for this key
-        successorNode.setDictionary(word, definition); // Add word with the given definition
-        nodeLogger.logInfo("Word '" + word + "' with definition '" + definition + "' added to the dictionary on Node " + successorNode.getID());
-        return successorNode;
+        long start = System.nanoTime();
+        try {
+            return routeInsert(HashedKey.of(word), definition);  // Compute hash of the word, once for the whole request
+        } finally {
+            metrics.recordInsert(start);
+        }
+    }
+
+    private Node routeInsert(HashedKey key, String definition) throws RemoteException {
+        String word = key.getWord();
+        NodeRef successorNode = atOwner(key.getHash(), owner -> {
+            owner.getNode().setDictionary(key, definition); // Add word with the given definition
+            return owner;
+        });
+        nodeLogger.logTrace(key.getHash(), () -> "Word '" + word + "' with definition '" + definition + "' added to the dictionary on Node " + successorNode.getId());
+        return successorNode.getNode();
     }
 
 
 
     @Override
     public Node insert(String word) throws RemoteException {
-        int key = hash32(word); // Compute hash of the word
-        Node node = findSuccessor(key); // Find the successor node for this key
-        node.setDictionary(word, null); // Add word with a null definition
-        nodeLogger.logInfo("Word '" + word + "' added to the dictionary on Node " + node.getID());
-        return node;
+        long start = System.nanoTime();
+        HashedKey key = HashedKey.of(word); // Compute hash of the word, once for the whole request
+        try {
+            return routeInsert(key);
+        } finally {
+            metrics.recordInsert(start);
+        }
+    }
+
+    private Node routeInsert(HashedKey key) throws RemoteException {
+        String word = key.getWord();
+        NodeRef node = atOwner(key.getHash(), owner -> {
+            owner.getNode().setDictionary(key, null); // Add word with a null definition
+            return owner;
+        });
+        nodeLogger.logTrace(key.getHash(), () -> "Word '" + word + "' added to the dictionary on Node " + node.getId());
+        return node.getNode();
     }
 
 
     @Override
     public String lookup(String word) throws RemoteException {
-        int key = hash32(word);
-        Node responsibleNode = findSuccessor(key);
+        return lookup(HashedKey.of(word));
+    }
 
-        if (responsibleNode.getID() == this.id) {
-            if (dictionary.containsKey(word)) {
-                nodeLogger.logInfo("Lookup for word '" + word + "' found on Node " + id);
-                return dictionary.get(word);  // Return the definition found
+    @Override
+    public String lookup(HashedKey key) throws RemoteException {
+        long start = System.nanoTime();
+        try {
+            return routeLookup(key);
+        } finally {
+            metrics.recordLookup(start);
+        }
+    }
+
+    private String routeLookup(HashedKey key) throws RemoteException {
+        String word = key.getWord();
+        ReadCache cache = readCache;
+        if (cache != null) {
+            if (readConsistency == ConsistencyLevel.ONE) {
+                String cached = cache.get(word);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            NodeRef owner = cache.owner(key.getHash());
+            if (owner != null && owner.getId() != id && !failureDetector.isSuspected(owner.getId())) {
+                try {
+                    String definition = readThroughCache(cache, owner, key);
+                    if (definition != null) {
+                        return definition;
+                    }
+                } catch (RemoteException e) {
+                    cache.forgetOwner(owner);  // Fall back to routing, which also handles a dead owner
+                }
+            }
+        }
+        return atOwner(key.getHash(), responsibleNode -> lookupAt(responsibleNode, key));
+    }
+
+    // Reads from the presumed owner and caches what it allows; null if it is not the owner after all
+    private String readThroughCache(ReadCache cache, NodeRef owner, HashedKey key) throws RemoteException {
+        long startedAt = System.nanoTime();
+        CachedRead read = owner.getNode().readForCache(key, self);
+        if (!read.isOwner()) {
+            cache.forgetOwner(owner);
+            return null;
+        }
+        cache.putOwner(read.getRangeStart(), owner);
+        if (read.isCacheable() && readConsistency == ConsistencyLevel.ONE) {
+            cache.put(key.getWord(), read.getDefinition(), startedAt);
+        }
+        return read.getDefinition();
+    }
+
+    // Registers the reader before reading, so any write that lands after the read also invalidates its copy
+    @Override
+    public CachedRead readForCache(HashedKey key, NodeRef reader) throws RemoteException {
+        String word = key.getWord();
+        if (!ownsKey(key.getHash())) {
+            return new CachedRead(false, null, 0, false);
+        }
+        boolean cacheable = cachedBy.containsKey(word) || cachedBy.size() < MAX_TRACKED_CACHED_WORDS;
+        if (cacheable) {
+            cachedBy.computeIfAbsent(word, w -> new ConcurrentHashMap<>()).put(reader.getId(), reader);
+        }
+        return new CachedRead(true, lookupAt(self, key), predecessor.getId(), cacheable);
+    }
+
+    @Override
+    public void invalidate(List<String> words) throws RemoteException {
+        ReadCache cache = readCache;
+        if (cache != null) {
+            for (String word : words) {
+                cache.invalidate(word);
+            }
+        }
+    }
+
+    @Override
+    public CacheStats getCacheStats() throws RemoteException {
+        ReadCache cache = readCache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    // Tells every node that read these words through its cache to drop them; waits so the write is visible
+    // everywhere once it returns. A node that misses the message serves its copy until the TTL runs out.
+    private void invalidateCachedCopies(Collection<String> words) {
+        ReadCache cache = readCache;
+        if (cache != null) {
+            for (String word : words) {
+                cache.invalidate(word);  // We may have cached it before the range became ours
+            }
+        }
+        if (cachedBy.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<String>> wordsByReader = new LinkedHashMap<>();
+        Map<Integer, NodeRef> readers = new LinkedHashMap<>();
+        for (String word : words) {
+            ConcurrentHashMap<Integer, NodeRef> copies = cachedBy.remove(word);
+            if (copies != null) {
+                for (NodeRef reader : copies.values()) {
+                    readers.putIfAbsent(reader.getId(), reader);
+                    wordsByReader.computeIfAbsent(reader.getId(), r -> new ArrayList<>()).add(word);
+                }
+            }
+        }
+        List<CompletableFuture<Void>> calls = new ArrayList<>(readers.size());
+        for (Map.Entry<Integer, NodeRef> reader : readers.entrySet()) {
+            calls.add(AsyncNode.of(reader.getValue().getNode()).invalidate(wordsByReader.get(reader.getKey()))
+                    .exceptionally(e -> {
+                        nodeLogger.logWarning("Could not invalidate cached copies on Node " + reader.getKey() + ": " + e.getMessage());
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private String lookupAt(NodeRef responsibleNode, HashedKey key) throws RemoteException {
+        String word = key.getWord();
+        if (responsibleNode.getId() == this.id) {
+            String definition = readConsistency == ConsistencyLevel.ONE
+                    ? localDefinition(word, key.getHash()) : quorumRead(word, key.getHash());
+            if (definition != null) {
+                nodeLogger.logTrace(key.getHash(), () -> "Lookup for word '" + word + "' found on Node " + id);
+                return definition;  // Return the definition found
+            }
+            return DEFINITION_NOT_FOUND;  // Or handle the case where the word isn't in the dictionary
+        }
+        ReadCache cache = readCache;
+        if (cache != null) {
+            String definition = readThroughCache(cache, responsibleNode, key);
+            if (definition != null) {
+                return definition;
+            }
+        }
+        return responsibleNode.getNode().lookup(key);
+    }
+
+    @Override
+    public int insertAll(Map<String, String> entries) throws RemoteException {
+        return insertAll(HashedEntries.of(entries));
+    }
+
+    @Override
+    public int insertAll(HashedEntries entries) throws RemoteException {
+        int[] hashes = new int[entries.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = entries.hash(i);
+        }
+        Map<NodeRef, List<Integer>> groups = groupByOwner(hashes);
+        for (Map.Entry<NodeRef, List<Integer>> group : groups.entrySet()) {
+            HashedEntries batch = new HashedEntries(group.getValue().size());
+            for (int index : group.getValue()) {
+                batch.add(entries.word(index), entries.hash(index), entries.definition(index));
+            }
+            group.getKey().getNode().setDictionaryAll(batch); // One RPC per owning node
+        }
+        nodeLogger.logTrace(() -> "Inserted batch of " + entries.size() + " words across " + groups.size() + " nodes");
+        return entries.size();
+    }
+
+    @Override
+    public List<String> lookupAll(Collection<String> words) throws RemoteException {
+        List<String> wordList = new ArrayList<>(words);
+        String[] results = new String[wordList.size()];
+        int[] hashes = new int[wordList.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = hash32(wordList.get(i));
+        }
+        for (Map.Entry<NodeRef, List<Integer>> group : groupByOwner(hashes).entrySet()) {
+            List<String> batch = new ArrayList<>(group.getValue().size());
+            for (int index : group.getValue()) {
+                batch.add(wordList.get(index));
+            }
+            List<String> definitions = group.getKey().getNode().lookupLocal(batch);
+            for (int i = 0; i < definitions.size(); i++) {
+                results[group.getValue().get(i)] = definitions.get(i);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void setDictionaryAll(Map<String, String> entries) throws RemoteException {
+        setDictionaryAll(HashedEntries.of(entries));
+    }
+
+    @Override
+    public void setDictionaryAll(HashedEntries entries) throws RemoteException {
+        applyAll(entries, true);
+        invalidateCachedCopies(entries.words());
+        replicate(entries);
+        nodeLogger.logTrace(() -> entries.size() + " words added to the dictionary on Node " + id);
+    }
+
+    @Override
+    public void storeReplicas(HashedEntries entries) throws RemoteException {
+        applyAll(entries, false);
+    }
+
+    // As owner we version every entry, and the batch then carries those versions to the replicas; a replica
+    // keeps the owner's versions, so whichever replica takes over answers compare-and-sets the same way
+    private void applyAll(HashedEntries entries, boolean owner) throws RemoteException {
+        for (int i = 0; i < entries.size(); i++) {
+            if (owner) {
+                entries.setVersion(i, VERSION_CLOCK.next());
+            } else {
+                VERSION_CLOCK.observe(entries.version(i));
+            }
+        }
+        WriteAheadLog log = writeAheadLog;
+        if (log == null) {
+            for (int i = 0; i < entries.size(); i++) {
+                dictionary.put(entries.word(i), entries.hash(i), entries.definition(i), entries.version(i), null);
             }
-            return "Definition not found.";  // Or handle the case where the word isn't in the dictionary
         } else {
-            return responsibleNode.lookup(word);
+            CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+            for (int i = 0; i < entries.size(); i++) {
+                last = logAndApply(log, entries.word(i), entries.hash(i), entries.definition(i), entries.version(i));
+            }
+            awaitDurable(last);  // One writer, so the last record being durable covers the whole batch
+        }
+    }
+
+    // Copies an owner's write to its replicas and returns once writeConsistency of them, counting us, hold it
+    private void replicate(HashedEntries entries) throws RemoteException {
+        NodeRef handoff = leavingTo;
+        if (handoff != null) {
+            handoff.getNode().storeReplicas(entries);  // Leaving, the successor must not miss writes made during the handoff
+        }
+        List<NodeRef> targets = replicaTargets();
+        if (targets.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> calls = new ArrayList<>(targets.size());
+        for (NodeRef target : targets) {
+            calls.add(AsyncNode.of(target.getNode()).storeReplicas(entries));
         }
+        awaitReplicas(calls, "Write of " + entries.size() + " words");
+    }
+
+    private <T> void awaitReplicas(List<CompletableFuture<T>> calls, String what) throws RemoteException {
+        for (CompletableFuture<T> call : calls) {
+            call.whenComplete((result, error) -> {
+                if (error != null) {
+                    replicaTargetsRefreshedAt = 0;  // Walk the successors again on the next write
+                }
+            });
+        }
+        Quorum.await(calls, writeConsistency.required(calls.size() + 1) - 1, what);
+    }
+
+    private String quorumRead(String word, int keyHash) throws RemoteException {
+        String local = localDefinition(word, keyHash);
+        List<NodeRef> targets = replicaTargets();
+        if (targets.isEmpty()) {
+            return local;
+        }
+        List<CompletableFuture<List<String>>> calls = new ArrayList<>(targets.size());
+        for (NodeRef target : targets) {
+            calls.add(AsyncNode.of(target.getNode()).lookupLocal(Collections.singletonList(word)));
+        }
+        List<String> answers = new ArrayList<>();
+        answers.add(local != null ? local : DEFINITION_NOT_FOUND);
+        for (List<String> reply : Quorum.await(calls, readConsistency.required(targets.size() + 1) - 1, "Read of '" + word + "'")) {
+            answers.add(reply.get(0));
+        }
+        String definition = Quorum.resolve(answers);
+        return DEFINITION_NOT_FOUND.equals(definition) ? null : definition;
+    }
+
+    // The next replicationFactor - 1 nodes after us, re-walked at most once a second or after a replica call failed
+    private List<NodeRef> replicaTargets() {
+        int factor = replicationFactor;
+        if (factor <= 1) {
+            return Collections.emptyList();
+        }
+        List<NodeRef> list = successorList;
+        if (list.size() >= factor - 1) {
+            List<NodeRef> live = new ArrayList<>(factor - 1);  // Skipping suspects keeps factor copies while one is down
+            boolean skippedHost = false;
+            for (NodeRef candidate : list) {
+                if (!isNewReplicaHost(live, candidate)) {
+                    skippedHost = true;
+                } else if (live.size() < factor - 1 && !failureDetector.isSuspected(candidate.getId())) {
+                    live.add(candidate);
+                }
+            }
+            if (!skippedHost || live.size() == factor - 1) {
+                return live;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (now - replicaTargetsRefreshedAt < REPLICA_TARGETS_TTL_MS) {
+            return replicaTargets;
+        }
+        List<NodeRef> targets = new ArrayList<>(factor - 1);
+        NodeRef current = successor;
+        try {
+            for (int steps = 0; current.getId() != id && targets.size() < factor - 1 && steps < MAX_RING_WALK; steps++) {
+                if (isNewReplicaHost(targets, current)) {
+                    targets.add(current);
+                }
+                if (targets.size() < factor - 1) {
+                    current = current.getNode().successorRef();
+                }
+            }
+        } catch (RemoteException e) {
+            nodeLogger.logWarning("Could not walk the successors past Node " + current.getId() + ": " + e.getMessage());
+        }
+        replicaTargets = targets;
+        replicaTargetsRefreshedAt = now;
+        return targets;
+    }
+
+    // A copy on our own host, or a second one on the same host, shares a store with another copy and adds nothing
+    private boolean isNewReplicaHost(List<NodeRef> targets, NodeRef candidate) {
+        String candidateHost = VirtualHost.hostOf(candidate.getUrl());
+        if (candidateHost.equals(host)) {
+            return false;
+        }
+        for (NodeRef target : targets) {
+            if (VirtualHost.hostOf(target.getUrl()).equals(candidateHost)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> lookupLocal(List<String> words) throws RemoteException {
+        List<String> definitions = new ArrayList<>(words.size());
+        for (String word : words) {
+            String definition = localDefinition(word, hash32(word));
+            definitions.add(definition != null ? definition : DEFINITION_NOT_FOUND);
+        }
+        return definitions;
+    }
+
+    @Override
+    public OwnedResult lookupIfOwner(HashedKey key) throws RemoteException {
+        if (!ownsKey(key.getHash())) {
+            return new OwnedResult(false, null);
+        }
+        String definition = localDefinition(key.getWord(), key.getHash());
+        return new OwnedResult(true, definition != null ? definition : DEFINITION_NOT_FOUND);
+    }
+
+    // For reads sent straight to a replica by a client's cached view: owner == false means we are not one of
+    // the key's replicas, so an absent word here says nothing about the ring
+    @Override
+    public OwnedResult lookupIfReplica(HashedKey key) throws RemoteException {
+        if (!holdsReplicaOf(key.getHash())) {
+            return new OwnedResult(false, null);
+        }
+        String definition = localDefinition(key.getWord(), key.getHash());
+        return new OwnedResult(true, definition != null ? definition : DEFINITION_NOT_FOUND);
+    }
+
+    // Checked against the cached range first; a miss recomputes it, as our predecessors may have changed since
+    private boolean holdsReplicaOf(int keyHash) throws RemoteException {
+        if (ownsKey(keyHash)) {
+            return true;
+        }
+        if (replicationFactor <= 1) {
+            return false;
+        }
+        int start = replicaRangeStart;
+        if (start != -1 && inReplicaRange(keyHash, start)) {
+            return true;
+        }
+        start = replicatedRangeStart();
+        replicaRangeStart = start;
+        return inReplicaRange(keyHash, start);
+    }
+
+    private boolean inReplicaRange(int keyHash, int start) {
+        return start == id || isInHalfOpenRange(keyHash, start, id);  // start == id: fewer nodes than replicas
+    }
+
+    @Override
+    public boolean insertIfOwner(HashedKey key, String definition) throws RemoteException {
+        if (!ownsKey(key.getHash())) {
+            return false;
+        }
+        setDictionary(key, definition);
+        return true;
+    }
+
+    @Override
+    public VersionedValue lookupVersioned(String word) throws RemoteException {
+        HashedKey key = HashedKey.of(word);
+        return atClaimingOwner(key, owner -> owner.getId() == id ? lookupVersionedIfOwner(key) : owner.getNode().lookupVersionedIfOwner(key));
+    }
+
+    @Override
+    public CasResult putIfAbsent(String word, String definition) throws RemoteException {
+        return compareAndSet(word, 0, definition);
+    }
+
+    @Override
+    public CasResult compareAndSet(String word, long expectedVersion, String definition) throws RemoteException {
+        HashedKey key = HashedKey.of(word);
+        return atClaimingOwner(key, owner -> owner.getId() == id
+                ? casIfOwner(key, expectedVersion, definition) : owner.getNode().casIfOwner(key, expectedVersion, definition));
+    }
+
+    @Override
+    public CasResult removeIfVersion(String word, long expectedVersion) throws RemoteException {
+        return compareAndSet(word, expectedVersion, null);
+    }
+
+    @Override
+    public VersionedValue lookupVersionedIfOwner(HashedKey key) throws RemoteException {
+        if (!ownsKey(key.getHash())) {
+            return null;
+        }
+        awaitTransferOf(key.getHash());
+        return dictionary.getVersioned(key.getWord(), key.getHash());
+    }
+
+    // Check and write happen under the store's lock for the word, so concurrent conditional writes to one word
+    // are ordered by its owner alone; a plain write in between gets a new version and fails the later ones.
+    // Replicas get the write, with our version, only once it is applied here.
+    @Override
+    public CasResult casIfOwner(HashedKey key, long expectedVersion, String definition) throws RemoteException {
+        if (!ownsKey(key.getHash())) {
+            return null;
+        }
+        String word = key.getWord();
+        int keyHash = key.getHash();
+        awaitTransferOf(keyHash);
+        long version = VERSION_CLOCK.next();
+        WriteAheadLog log = writeAheadLog;
+        List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+        boolean applied = dictionary.compareAndSet(word, keyHash, expectedVersion, definition, version, log == null ? null
+                : () -> durable.add(definition == null ? log.appendRemove(word) : log.appendPut(word, definition, version)));
+        if (!applied) {
+            casConflicts.increment();
+            return new CasResult(false, dictionary.getVersioned(word, keyHash));  // What the caller retries against
+        }
+        casApplied.increment();
+        if (!durable.isEmpty()) {
+            awaitDurable(durable.get(0));
+        }
+        invalidateCachedCopies(Collections.singletonList(word));
+        if (definition == null) {
+            removeReplicas(key);
+            return new CasResult(true, VersionedValue.ABSENT);
+        }
+        replicate(HashedEntries.of(word, keyHash, definition, version));
+        return new CasResult(true, new VersionedValue(definition, version));
+    }
+
+    // A joining node owns its range before it holds the words; a version check against the half-moved range
+    // would be wrong, so conditional operations wait for the transfer to finish
+    private void awaitTransferOf(int keyHash) throws RemoteException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(JOIN_TIMEOUT_MS);
+        PendingTransfer pending;
+        while ((pending = pendingTransfer) != null && RingRange.contains(keyHash, pending.start, pending.end)) {
+            if (System.nanoTime() > deadline) {
+                throw new RemoteException("Key " + keyHash + " is still being transferred to Node " + id);
+            }
+            try {
+                Thread.sleep(JOIN_RETRY_MIN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted waiting for the transfer of key " + keyHash, e);
+            }
+        }
+    }
+
+    @Override
+    public NodeRef successorRef() throws RemoteException {
+        return successor;
+    }
+
+    @Override
+    public NodeRef predecessorRef() throws RemoteException {
+        return predecessor;
+    }
+
+    // Chord's notify: candidate thinks it might be our predecessor
+    @Override
+    public void notifyPredecessor(NodeRef candidate) throws RemoteException {
+        while (true) {
+            NodeRef pred = predecessor;
+            if (candidate.getId() == id || !(pred.getId() == id || isInOpenRange(candidate.getId(), pred.getId(), id))) {
+                return;
+            }
+            if (PREDECESSOR.compareAndSet(this, pred, candidate)) {
+                nodeLogger.logInfo("Predecessor changed to Node " + candidate.getId() + " by notify");
+                pointersChanged();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public MaintenanceStats getMaintenanceStats() throws RemoteException {
+        RingMaintenance running = maintenance;
+        return running == null ? new MaintenanceStats(0, 0, 0, 0, false, -1, 0, 0) : running.getStats();
+    }
+
+    // Adopts our successor's predecessor if it sits between us, then tells the successor about us; true if the successor changed
+    // Also refreshes the successor list from the successor's, so a dead successor can be skipped without a lookup
+    public boolean stabilize() throws RemoteException {
+        boolean changed = false;
+        NodeRef succ = liveSuccessor();
+        if (succ.getId() != successor.getId()) {
+            setFinger(0, succ);
+            changed = true;
+            nodeLogger.logInfo("Successor Node " + successor.getId() + " is suspected, failing over to Node " + succ.getId());
+        }
+        NodeRef x;
+        try {
+            x = succ.getId() == id ? predecessor : succ.getNode().predecessorRef();
+        } catch (RemoteException e) {
+            failureDetector.suspect(succ);
+            return true;  // The next run moves on to the next live successor
+        }
+        if (x.getId() != id && x.getId() != succ.getId() && !failureDetector.isSuspected(x.getId())
+                && (succ.getId() == id || isInOpenRange(x.getId(), id, succ.getId()))) {
+            setFinger(0, x);
+            succ = x;
+            changed = true;
+            nodeLogger.logInfo("Successor changed to Node " + x.getId() + " by stabilize");
+        }
+        if (succ.getId() != id) {
+            succ.getNode().notifyPredecessor(self);
+            changed |= refreshSuccessorList(succ);
+        }
+        if (replicationFactor > 1) {
+            replicaRangeStart = replicatedRangeStart();  // Drops a range we no longer replicate
+        }
+        return changed;
+    }
+
+    private boolean refreshSuccessorList(NodeRef succ) throws RemoteException {
+        int size = Math.max(MIN_SUCCESSOR_LIST_SIZE, replicationFactor);
+        List<NodeRef> list = new ArrayList<>(size);
+        list.add(succ);
+        for (NodeRef next : succ.getNode().getSuccessorList()) {
+            if (list.size() == size || next.getId() == id) {
+                break;  // Wrapped around a ring smaller than the list
+            }
+            list.add(next);
+        }
+        List<NodeRef> old = successorList;
+        successorList = list;
+        return !sameIds(old, list);
+    }
+
+    private static boolean sameIds(List<NodeRef> a, List<NodeRef> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).getId() != b.get(i).getId()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Pings the successor list and the predecessor; a suspected successor is replaced by the next live one
+    public boolean heartbeat() {
+        List<NodeRef> neighbours = new ArrayList<>(successorList);
+        neighbours.add(successor);
+        neighbours.add(predecessor);
+        neighbours.removeIf(n -> n.getId() == id);
+        boolean changed = failureDetector.heartbeat(neighbours);
+        NodeRef live = liveSuccessor();
+        if (live.getId() != successor.getId()) {
+            nodeLogger.logInfo("Successor Node " + successor.getId() + " missed its heartbeats, failing over to Node " + live.getId());
+            setFinger(0, live);
+            changed = true;
+        }
+        NodeRef pred = predecessor;
+        if (pred.getId() != id && failureDetector.isSuspected(pred.getId()) && PREDECESSOR.compareAndSet(this, pred, self)) {
+            changed = true;  // As in checkPredecessor, the real one notifies us soon
+        }
+        return changed;
+    }
+
+    @Override
+    public List<NodeRef> getSuccessorList() throws RemoteException {
+        return successorList;
+    }
+
+    // Re-resolves one finger per call, cycling through the table; true if it pointed somewhere else
+    public boolean fixNextFinger() throws RemoteException {
+        int i = nextFingerToFix;
+        nextFingerToFix = (i + 1) % NUM_FINGERS;
+        NodeRef found = routeFrom(self, modulo31Add(id, 1 << i), false);
+        NodeRef current = fingerTable.get(i);
+        if (current != null && current.getId() == found.getId()) {
+            return false;
+        }
+        setFinger(i, found);
+        return true;
+    }
+
+    // Forgets a predecessor that no longer answers; the next notify from the real one sets it again
+    public boolean checkPredecessor() {
+        NodeRef pred = predecessor;
+        if (pred.getId() == id) {
+            return false;
+        }
+        try {
+            pred.getNode().getID();
+            return false;
+        } catch (RemoteException e) {
+            failureDetector.suspect(pred);
+            nodeLogger.logWarning("Predecessor Node " + pred.getId() + " is unreachable: " + e.getMessage());
+            PREDECESSOR.compareAndSet(this, pred, self);  // Until then we answer for its range too, which is ours once it is gone
+            return true;
+        }
+    }
+
+    // Visible to in-process tools that compare the table with the real ring
+    public List<NodeRef> getFingers() {
+        List<NodeRef> fingers = new ArrayList<>(NUM_FINGERS);
+        for (int i = 0; i < NUM_FINGERS; i++) {
+            fingers.add(fingerTable.get(i));
+        }
+        return fingers;
+    }
+
+    private void pointersChanged() {
+        RingMaintenance running = maintenance;
+        if (running != null) {
+            running.pointersChanged();
+        }
+    }
+
+    @Override
+    public List<NodeRef> getRingMembers() throws RemoteException {
+        List<NodeRef> members = new ArrayList<>();
+        members.add(self);
+        NodeRef previous = self;
+        NodeRef current = liveSuccessor();
+        while (current.getId() != id && members.size() < MAX_RING_WALK) {
+            try {
+                NodeRef next = current.getNode().successorRef();
+                members.add(current);
+                previous = current;
+                current = next;
+            } catch (RemoteException e) {
+                failureDetector.suspect(current);
+                current = nextInSuccessorList(previous, current);  // A dead node: continue after it
+            }
+        }
+        return members;
+    }
+
+    private NodeRef nextInSuccessorList(NodeRef owner, NodeRef dead) throws RemoteException {
+        List<NodeRef> list = owner.getId() == id ? successorList : owner.getNode().getSuccessorList();
+        for (int i = 0; i < list.size() - 1; i++) {
+            if (list.get(i).getId() == dead.getId()) {
+                return list.get(i + 1);
+            }
+        }
+        return self;  // Nothing known past it, end the walk here
+    }
+
+    private boolean ownsKey(int keyHash) {
+        return isInHalfOpenRange(keyHash, predecessor.getId(), id);
+    }
+
+    // Returns the version the write got
+    private long store(String word, int keyHash, String definition) throws RemoteException {
+        long version = VERSION_CLOCK.next();
+        WriteAheadLog log = writeAheadLog;
+        if (log == null) {
+            dictionary.put(word, keyHash, definition, version, null);
+        } else {
+            awaitDurable(logAndApply(log, word, keyHash, definition, version));
+        }
+        return version;
+    }
+
+    // Logging while the store holds the entry keeps the log order of each word identical to the order its writes hit the map
+    private CompletableFuture<Void> logAndApply(WriteAheadLog log, String word, int keyHash, String definition, long version) {
+        List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+        dictionary.put(word, keyHash, definition, version, () -> durable.add(log.appendPut(word, definition, version)));
+        return durable.get(0);
+    }
+
+    private void awaitDurable(CompletableFuture<Void> durable) throws RemoteException {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new RemoteException("Write-ahead log append failed", e.getCause());
+        }
+    }
+
+    // Groups input positions by owning node. Hashes are visited in ring order, so each owner is
+    // resolved once and the next owner is usually one nextHop() away from the previous one.
+    private Map<NodeRef, List<Integer>> groupByOwner(int[] hashes) throws RemoteException {
+        Integer[] order = new Integer[hashes.length];
+        for (int i = 0; i < hashes.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(hashes[a], hashes[b]));
+
+        Map<Integer, NodeRef> owners = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> indicesByOwner = new LinkedHashMap<>();
+        NodeRef owner = null;
+        int firstCovered = 0;
+        for (int index : order) {
+            int keyHash = hashes[index];
+            if (owner == null || ringDistance(firstCovered, keyHash) > ringDistance(firstCovered, owner.getId())) {
+                owner = routeFrom(owner == null ? self : owner, keyHash);
+                firstCovered = keyHash;
+                owners.putIfAbsent(owner.getId(), owner);
+            }
+            indicesByOwner.computeIfAbsent(owner.getId(), k -> new ArrayList<>()).add(index);
+        }
+
+        Map<NodeRef, List<Integer>> groups = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : indicesByOwner.entrySet()) {
+            groups.put(owners.get(entry.getKey()), entry.getValue());
+        }
+        return groups;
     }
 
     @Override
@@ -149,23 +1238,36 @@ public class NodeImpl extends UnicastRemoteObject implements Node, Serializable
         StringBuilder sb = new StringBuilder();
         sb.append("Finger Table for ").append(url).append(":\n");
         for (int i = 0; i < fingerTable.size(); i++) {
-            sb.append("Finger ").append(i).append(": ").append(fingerTable.get(modulo31Add(id, (int) Math.pow(2, i)))).append("\n");
+            sb.append("Finger ").append(i).append(": ").append(fingerTable.get(i)).append("\n");
         }
         return sb.toString();
     }
 
     @Override
     public int getDictionarySize() throws RemoteException {
-        return dictionary.size();  // Return the count of entries in the dictionary
+        return dictionary.size();  // Words on this host; virtual nodes of one host report the same shared store
+    }
+
+    // The words this node holds in (after, end], a page at a time; limit bounds the words examined, so a page
+    // filtered by prefix may hold fewer or none. Holding a word does not make this node its owner: callers pass
+    // the range the node owns. Words still in flight to a joining node are not seen until they arrive.
+    @Override
+    public ScanPage scanRange(int after, int end, String prefix, int limit) throws RemoteException {
+        int examined = Math.max(1, Math.min(limit, MAX_SCAN_PAGE));
+        HashedEntries entries = new HashedEntries(prefix == null ? examined : 16);
+        int next = dictionary.scanRange(after, end, examined, (word, keyHash, definition, version) -> {
+            if (prefix == null || word.startsWith(prefix)) {
+                entries.add(word, keyHash, definition, version);
+            }
+        });
+        return new ScanPage(entries, next, next == end);
     }
 
     @Override
     public String printDictionary() throws RemoteException {
         StringBuilder sb = new StringBuilder();
         sb.append("Dictionary for ").append(url).append(":\n");
-        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
-            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
-        }
+        dictionary.forEach((word, definition) -> sb.append(word).append(": ").append(definition).append("\n"));
         return sb.toString();
     }
 
@@ -183,91 +1285,331 @@ public class NodeImpl extends UnicastRemoteObject implements Node, Serializable
     public void join(Node bootstrapNode) throws RemoteException, InterruptedException {
         if (bootstrapNode != null) {
             nodeLogger.logInfo("Attempting to join the network via Node " + bootstrapNode.getURL());
-            boolean lockAcquired = bootstrapNode.acquireJoinLock(this.url);
-            if (!lockAcquired) {
-                nodeLogger.logInfo("Failed to acquire join lock, join aborted.");
-                return;
-            }
-            try {
-                initFingerTable(bootstrapNode);
-                updateOthers();
-                nodeLogger.logInfo("Joined the network, finger table and others updated.");
-            } finally {
-                bootstrapNode.releaseJoinLock(this.url);
-            }
+            long begin = System.nanoTime();
+            NodeRef succ = claimRange(bootstrapNode);
+            linkPredecessor(succ);
+            initFingerTable(succ);
+            updateOthers();
+            nodeLogger.logInfo(String.format("Joined the network after %d attempt(s) in %.1f ms, finger table and others updated.",
+                    joinAttempts, (System.nanoTime() - begin) / 1e6));
 
-            move_keys_predecessor_to_new_node();
+            move_keys_from_successor();
+            joined = true;
         } else {
-            this.predecessor = this;
-            this.successor = this;
+            joined = true;
+            this.predecessor = self;
+            this.successor = self;
             for (int i = 0; i < NUM_FINGERS; i++) {
-                fingerTable.put(i, this);
+                fingerTable.put(i, self);
             }
             nodeLogger.logInfo("Node0 has started and initialized the Chord ring.");
         }
     }
 
-    private void move_keys_predecessor_to_new_node() throws RemoteException {
-        Map<String, String> allPredecessorKeys = predecessor.getDictionary();
-        List<String> keysToTransfer = new ArrayList<>();
+    // Finds our successor and asks it to admit us as its predecessor. Two joins into the same range are ordered
+    // by that successor; a refused claim means another node got in first or the lookup was stale, so we back
+    // off with jitter and look up our successor again rather than giving up.
+    private NodeRef claimRange(Node bootstrapNode) throws RemoteException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(JOIN_TIMEOUT_MS);
+        long backoff = JOIN_RETRY_MIN_MS;
+        for (int attempt = 1; ; attempt++) {
+            NodeRef succ = NodeRef.of(bootstrapNode.findSuccessor(id));
+            if (succ.getId() == id) {
+                throw new RemoteException("Node id " + id + " is already in the ring");
+            }
+            setFinger(0, succ);  // Set before anyone can reach us through the successor
+            NodeRef previous = succ.getNode().admitPredecessor(self);
+            if (previous != null) {
+                predecessor = previous;
+                joinAttempts = attempt;
+                // Reads of our range fall back to the successor from now until the transfer is done
+                transferTombstones.clear();
+                pendingTransfer = new PendingTransfer(replicatedRangeStart(), id, succ);
+                return succ;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new RemoteException("Could not claim a place in the ring after " + attempt + " attempts");
+            }
+            nodeLogger.logInfo("Node " + succ.getId() + " did not admit us as predecessor, retrying in up to " + backoff + " ms");
+            Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            backoff = Math.min(backoff * 2, JOIN_RETRY_MAX_MS);
+        }
+    }
 
-        for (Map.Entry<String, String> entry : allPredecessorKeys.entrySet()) {
-            String key = entry.getKey();
-            int keyHash = hash32(key);
+    // Points our predecessor's successor at us. It can still name an earlier joiner's successor for a moment
+    // if that joiner has not linked itself yet, so retry briefly; stabilize repairs whatever this misses.
+    private void linkPredecessor(NodeRef succ) throws RemoteException, InterruptedException {
+        NodeRef pred = predecessor;
+        for (int attempt = 0; attempt < LINK_ATTEMPTS; attempt++) {
+            if (pred.getNode().casSuccessor(succ, self)) {
+                return;
+            }
+            Thread.sleep(JOIN_RETRY_MIN_MS);
+        }
+        nodeLogger.logWarning("Node " + pred.getId() + " no longer has Node " + succ.getId() + " as successor, leaving the link to stabilize");
+    }
+
+    // Number of admission attempts the last join needed; visible to in-process benchmarks
+    public int getJoinAttempts() {
+        return joinAttempts;
+    }
 
-            if (isInRange(keyHash, predecessor.getID(), id)) {
-                keysToTransfer.add(key);
+    // Pulls (predecessor, id] from the successor in chunks. Until the last chunk arrives, misses in that range
+    // are answered from the successor, so the range stays readable throughout.
+    private void move_keys_from_successor() throws RemoteException {
+        PendingTransfer transfer = pendingTransfer;
+        if (transfer == null) {
+            return;
+        }
+        NodeRef from = transfer.source;
+        int start = transfer.start;
+        try {
+            long begin = System.nanoTime();
+            int moved = from.getNode().transferRange(start, id, this, TRANSFER_CHUNK_SIZE);
+            nodeLogger.logInfo(String.format("Received %d words for (%d, %d] from Node %d in %.1f ms",
+                    moved, start, id, from.getId(), (System.nanoTime() - begin) / 1e6));
+        } finally {
+            pendingTransfer = null;
+            transferTombstones.clear();
+        }
+    }
+
+    // Besides our own range we hold copies of the ranges of our replicationFactor - 1 predecessors
+    private int replicatedRangeStart() throws RemoteException {
+        NodeRef start = predecessor;
+        for (int i = 1; i < replicationFactor && start.getId() != id; i++) {
+            NodeRef previous = NodeRef.of(start.getNode().predecessor());
+            if (previous.getId() == id) {
+                return id;  // Fewer nodes than replicas, every node holds the whole ring
             }
+            start = previous;
+        }
+        return start.getId();
+    }
+
+    @Override
+    public int transferRange(int start, int end, Node target, int chunkSize) throws RemoteException {
+        if (host.equals(VirtualHost.hostOf(target.getURL()))) {
+            nodeLogger.logInfo("(" + start + ", " + end + "] stays in the store we share with " + target.getURL());
+            return 0;
+        }
+        int moved = pushRange(start, end, target, chunkSize);
+        if (replicationFactor > 1) {
+            // We stay a replica of everything we handed over. The node that drops out of the replica set keeps
+            // its now unused copy; nothing reads it, but it is not reclaimed either.
+            nodeLogger.logInfo("Copied " + moved + " words in (" + start + ", " + end + "] to Node " + target.getID());
+            return moved;
         }
 
-        for (String key : keysToTransfer) {
-            predecessor.remove(key);
-            this.insert(key, allPredecessorKeys.get(key));
+        // Only drop our copies once the joiner has every chunk
+        WriteAheadLog log = writeAheadLog;
+        List<CompletableFuture<Void>> durable = new ArrayList<>();
+        dictionary.removeRange(start, end, log == null ? null : word -> durable.add(log.appendRemove(word)));
+        if (!durable.isEmpty()) {
+            awaitDurable(durable.get(durable.size() - 1));
         }
+        nodeLogger.logInfo("Transferred " + moved + " words in (" + start + ", " + end + "] to Node " + target.getID());
+        return moved;
+    }
+
+    // Sends (start, end] to target in chunks of chunkSize; memory on both sides is bounded by one chunk
+    private int pushRange(int start, int end, Node target, int chunkSize) throws RemoteException {
+        HashedEntries chunk = new HashedEntries(chunkSize);
+        int[] moved = new int[1];
+        RemoteException[] failure = new RemoteException[1];
+        dictionary.forEachInRange(start, end, (word, keyHash, definition, version) -> {
+            if (failure[0] != null) {
+                return;
+            }
+            chunk.add(word, keyHash, definition, version);  // The store's hash, so the receiver does not compute it again
+            if (chunk.size() >= chunkSize) {
+                try {
+                    target.receiveRange(chunk);
+                    moved[0] += chunk.size();
+                    chunk.clear();
+                } catch (RemoteException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];  // Nothing removed yet, the joiner retries or the data stays here
+        }
+        if (!chunk.isEmpty()) {
+            target.receiveRange(chunk);
+            moved[0] += chunk.size();
+        }
+        metrics.recordWordsSent(moved[0]);
+        return moved[0];
+    }
+
+    @Override
+    public void receiveRange(HashedEntries chunk) throws RemoteException {
+        WriteAheadLog log = writeAheadLog;
+        List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+        for (int i = 0; i < chunk.size(); i++) {
+            String word = chunk.word(i);
+            String definition = chunk.definition(i);
+            long version = chunk.version(i);
+            if (transferTombstones.contains(word)) {
+                continue;  // Removed here while the transfer was running
+            }
+            VERSION_CLOCK.observe(version);
+            // Writes that reached us during the transfer are newer than the handed-over copy
+            dictionary.putIfAbsent(word, chunk.hash(i), definition, version,
+                    log == null ? null : () -> durable.add(log.appendPut(word, definition, version)));
+        }
+        if (!durable.isEmpty()) {
+            awaitDurable(durable.get(durable.size() - 1));
+        }
+        metrics.recordWordsReceived(chunk.size());
+    }
+
+    private String localDefinition(String word, int keyHash) throws RemoteException {
+        String definition = dictionary.get(word, keyHash);
+        PendingTransfer pending = pendingTransfer;
+        if (definition == null && pending != null && RingRange.contains(keyHash, pending.start, pending.end)
+                && !transferTombstones.contains(word)) {
+            String handedOver = pending.source.getNode().lookupLocal(Collections.singletonList(word)).get(0);  // Not moved yet
+            return DEFINITION_NOT_FOUND.equals(handedOver) ? null : handedOver;
+        }
+        return definition;
     }
 
     public void updateOthers() throws RemoteException {
-        if (this.predecessor != this) {
-            this.predecessor.setSuccessor(this);
+        forEachFingerHolder((p, finger) -> AsyncNode.of(p.getNode()).updateFingerTable(self, finger));
+    }
+
+    // Every node p whose i-th finger may be us precedes id - 2^i (the +1 catches a node sitting exactly there).
+    // The 31 lookups and updates are independent, so they are all issued at once.
+    private void forEachFingerHolder(BiFunction<NodeRef, Integer, CompletableFuture<Void>> update) throws RemoteException {
+        List<CompletableFuture<Void>> updates = new ArrayList<>(NUM_FINGERS);
+        for (int i = 0; i < NUM_FINGERS; i++) {
+            final int finger = i;
+            updates.add(findPredecessorAsync(modulo31Add(this.id, (int) (RING_SIZE - (1L << i)) + 1))
+                    .thenCompose(p -> p.getId() == this.id
+                            ? CompletableFuture.completedFuture(null)
+                            : update.apply(p, finger)));
         }
-        for (int i = 0; i < fingerTable.size(); i++) {
-            Node successorNode = fingerTable.get(i);
-            if (successorNode != null && !successorNode.equals(this) && !successorNode.equals(this.predecessor)) {
-                successorNode.updateFingerTable(i);
+        try {
+            CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RemoteException ? (RemoteException) e.getCause() : new RemoteException("Finger update failed", e.getCause());
+        }
+    }
+
+    // Graceful departure: hand every word we hold to the successor, link our neighbours to each other and
+    // point fingers that named us at the successor. Writes that reach us meanwhile are copied to it as well.
+    @Override
+    public void leave() throws RemoteException {
+        stopMaintenance();
+        NodeRef succ = liveSuccessor();
+        NodeRef pred = predecessor;
+        if (succ.getId() == id) {
+            nodeLogger.logInfo("Last node in the ring, nothing to hand over");
+            return;
+        }
+        leavingTo = succ;
+        long begin = System.nanoTime();
+        int start = replicatedRangeStart();
+        boolean sharedStore = host.equals(VirtualHost.hostOf(succ.getUrl()));  // Another of our virtual nodes takes over
+        int moved = sharedStore ? 0 : pushRange(start, id, succ.getNode(), TRANSFER_CHUNK_SIZE);
+        succ.getNode().setPredecessor(pred.getId() == id || pred.getId() == succ.getId() ? succ.getNode() : pred.getNode());
+        if (pred.getId() != id) {
+            pred.getNode().setSuccessor(succ.getNode());
+        }
+        forEachFingerHolder((p, finger) -> AsyncNode.of(p.getNode()).replaceFinger(self, succ));
+        WriteAheadLog log = writeAheadLog;
+        if (!sharedStore) {
+            // A restart must not bring them back, so the removes are durable before we return and the process exits
+            List<CompletableFuture<Void>> durable = new ArrayList<>();
+            dictionary.removeRange(start, id, log == null ? null : word -> durable.add(log.appendRemove(word)));
+            if (!durable.isEmpty()) {
+                awaitDurable(durable.get(durable.size() - 1));
             }
         }
+        nodeLogger.logInfo(String.format("Left the ring: handed %d words to Node %d in %.1f ms",
+                moved, succ.getId(), (System.nanoTime() - begin) / 1e6));
     }
 
-    public void updateFingerTable(int i) throws RemoteException {
-        if (this.fingerTable.get(i) == null || isInRange(modulo31Add(this.id, (int) Math.pow(2, i)), this.fingerTable.get(i).getID(), this.id)) {
-            this.fingerTable.put(i, this);
+    @Override
+    public void replaceFinger(NodeRef leaving, NodeRef replacement) throws RemoteException {
+        boolean replaced = false;
+        for (int i = 0; i < NUM_FINGERS; i++) {
+            NodeRef f = fingerTable.get(i);
+            if (f != null && f.getId() == leaving.getId()) {
+                setFinger(i, replacement.getId() == id ? self : replacement);
+                replaced = true;
+            }
+        }
+        List<NodeRef> list = new ArrayList<>(successorList);
+        if (list.removeIf(n -> n.getId() == leaving.getId())) {
+            successorList = list;
+        }
+        if (replaced) {
+            pointersChanged();
+            NodeRef p = this.predecessor;
+            if (p.getId() != leaving.getId() && p.getId() != this.id) {
+                p.getNode().replaceFinger(leaving, replacement);
+            }
         }
     }
 
-    private void initFingerTable(Node n_prime) throws RemoteException {
-        System.out.println("Initializing finger table...");
-        this.fingerTable.put(0, n_prime.findSuccessor(modulo31Add(this.id, 1)));
-        //this.successor = fingerTable[0];
-        this.predecessor = this.fingerTable.get(0).predecessor();
+    private CompletableFuture<NodeRef> findPredecessorAsync(int key) throws RemoteException {
+        if (ownsKey(key)) {
+            return CompletableFuture.completedFuture(predecessor);
+        }
+        return followHops(self, nextHop(key), key, 0);
+    }
 
-        //if (this.getURL().equals("node-3")) {
-        //    System.out.println("!!!CHECKPOINT CHECK: " + this.fingerTable[0].getURL());
-        //}
-        this.fingerTable.get(0).setPredecessor(this);
+    private CompletableFuture<NodeRef> followHops(NodeRef current, RouteHop hop, int key, int hops) {
+        if (hop.isOwner() || hops >= MAX_ROUTE_HOPS) {
+            return CompletableFuture.completedFuture(current);
+        }
+        NodeRef next = hop.getNext();
+        return AsyncNode.of(next.getNode()).nextHop(key).thenCompose(h -> followHops(next, h, key, hops + 1));
+    }
+
+    public void updateFingerTable(NodeRef s, int i) throws RemoteException {
+        int start = modulo31Add(this.id, 1 << i);
+        NodeRef current = this.fingerTable.get(i);
+        if (s.getId() == this.id) {
+            return;
+        }
+        if (current == null || ringDistance(start, s.getId()) < ringDistance(start, current.getId())) {
+            setFinger(i, s);
+            pointersChanged();
+            NodeRef p = this.predecessor;
+            if (p.getId() != s.getId() && p.getId() != this.id) {
+                p.getNode().updateFingerTable(s, i);
+            }
+        }
+    }
 
-        for (int i = 0; i < 30; i++) {
+    // The successor is already set by the join; the remaining fingers are looked up through it
+    private void initFingerTable(NodeRef succ) throws RemoteException {
+        System.out.println("Initializing finger table...");
+        Node n_prime = succ.getNode();
+        for (int i = 0; i < NUM_FINGERS - 1; i++) {
             int finger_i_start = modulo31Add(this.id, (1 << (i + 1)));
 
-            if (isInRange(finger_i_start, this.id, fingerTable.get(i).getID())) {
+            if (isInRange(finger_i_start, this.id, fingerTable.get(i).getId())) {
                 fingerTable.put(i+1,fingerTable.get(i));
             }
             else {
-                fingerTable.put(i+1, n_prime.findSuccessor(finger_i_start));
+                fingerTable.put(i+1, NodeRef.of(n_prime.findSuccessor(finger_i_start)));
             }
         }
         System.out.println("Finished initializing finger table...");
     }
 
+    private void setFinger(int i, NodeRef ref) {
+        fingerTable.put(i, ref);
+        if (i == 0) {
+            this.successor = ref;
+        }
+    }
+
     private boolean isInRange(int keyHash, int start, int end) {
         if (start <= end) {
             return start <= keyHash && keyHash < end;
@@ -276,55 +1618,184 @@ public class NodeImpl extends UnicastRemoteObject implements Node, Serializable
         }
     }
 
+    // (start, end] on the ring; start == end covers the whole ring
+    private boolean isInHalfOpenRange(int keyHash, int start, int end) {
+        return RingRange.contains(keyHash, start, end);
+    }
+
+    // (start, end) on the ring; start == end covers everything but start
+    private boolean isInOpenRange(int keyHash, int start, int end) {
+        if (start < end) {
+            return start < keyHash && keyHash < end;
+        } else {
+            return (start < keyHash || keyHash < end) && keyHash != start;
+        }
+    }
+
+    private long ringDistance(int from, int to) {
+        return ((long) to - from + RING_SIZE) % RING_SIZE;
+    }
+
     private int modulo31Add(int id, int i) {
-        int mod = (int) Math.pow(2, NUM_FINGERS - 1);
-        int mod31 = (int) Math.pow(2, 31);
-        return ((id + i) % mod + mod) % mod31;
+        return (int) (((long) id + i) % RING_SIZE);
     }
 
     @Override
     public Node findSuccessor(int key) throws RemoteException {
-        nodeLogger.logInfo("Finding successor for key: " + key);
+        return findSuccessorRef(key).getNode();
+    }
+
+    private NodeRef findSuccessorRef(int key) throws RemoteException {
+        nodeLogger.logTrace(key, () -> "Finding successor for key: " + key);
+        return routingMode == RoutingMode.CLASSIC ? classicFindSuccessor(key) : iterativeFindSuccessor(key);
+    }
+
+    private NodeRef iterativeFindSuccessor(int key) throws RemoteException {
+        return routeFrom(self, key);
+    }
+
+    private NodeRef routeFrom(NodeRef start, int key) throws RemoteException {
+        return routeFrom(start, key, true);
+    }
+
+    // Maintenance lookups pass record = false so the routing stats only describe client lookups
+    // A hop that does not answer is suspected and the node that named it is asked to route around it,
+    // so a dead node costs one failed call instead of failing the lookup
+    private NodeRef routeFrom(NodeRef start, int key, boolean record) throws RemoteException {
+        NodeRef current = start;
+        RouteHop hop = askNextHop(start, key, null);
+        int hops = start.getId() == id ? 0 : 1;
+        if (hop == null) {
+            failureDetector.suspect(start);
+            current = self;
+            hop = nextHop(key);
+        }
+        while (!hop.isOwner() || failureDetector.isSuspected(hop.getNext().getId())) {
+            if (hops >= MAX_ROUTE_HOPS) {
+                nodeLogger.logWarning("No valid successor found for key: " + key + ", returning self.");
+                return self;
+            }
+            NodeRef next = hop.getNext();
+            RouteHop following = hop.isOwner() ? null : askNextHop(next, key, null); // One round trip per hop
+            if (following != null) {
+                current = next;
+                hop = following;
+            } else {
+                failureDetector.suspect(next);
+                hop = askNextHop(current, key, next);
+                if (hop == null) {
+                    failureDetector.suspect(current);
+                    current = self;
+                    hop = nextHop(key);
+                }
+            }
+            hops++;
+        }
+        if (record) {
+            recordRoute(hops, hops);
+        }
+        return hop.getNext();
+    }
+
+    private NodeRef classicFindSuccessor(int key) throws RemoteException {
         Node current = this;
-        while (key > current.getID() && key <= current.successor().getID()) {
-            if (current.equals(this)) {
-                break;
+        int hops = 0;
+        int rpcs = 0;
+        while (true) {
+            boolean remote = current != this;
+            int currentId = current.getID();
+            Node succ = current.successor();
+            int succId = succ.getID();
+            rpcs += (remote ? 2 : 0) + (succ != this ? 1 : 0);
+            if (currentId == succId || isInHalfOpenRange(key, currentId, succId)) {
+                String succUrl = succ.getURL();
+                recordRoute(hops, rpcs + (succ != this ? 1 : 0));
+                return new NodeRef(succ, succId, succUrl);
             }
-            current = current.closestPrecedingFinger(key);
+            if (hops >= MAX_ROUTE_HOPS) {
+                nodeLogger.logWarning("No valid successor found for key: " + key + ", returning self.");
+                return self;
+            }
+            Node next = current.closestPrecedingFinger(key);
+            rpcs += remote ? 1 : 0;
+            current = next == current ? succ : next;
+            hops++;
         }
-        if (current == null || current.successor() == null) {
-            nodeLogger.logWarning("No valid successor found for key: " + key + ", returning self.");
-            return this;
+    }
+
+    // One nextHop round trip, reporting `avoiding` as unreachable first if set; null if the node did not answer
+    private RouteHop askNextHop(NodeRef node, int key, NodeRef avoiding) {
+        try {
+            if (node.getId() == id) {
+                return avoiding == null ? nextHop(key) : nextHopAvoiding(key, avoiding);
+            }
+            return avoiding == null ? node.getNode().nextHop(key) : node.getNode().nextHopAvoiding(key, avoiding);
+        } catch (RemoteException e) {
+            return null;
         }
-        return current.successor();
     }
 
+    // Runs call at the key's owner; if the owner does not answer it is suspected and the key routed again,
+    // which lands on the next live successor. Errors raised by a live owner are not retried.
+    private <T> T atOwner(int key, OwnerCall<T> call) throws RemoteException {
+        RemoteException failure = null;
+        for (int attempt = 0; attempt < MAX_FAILOVER_ATTEMPTS; attempt++) {
+            NodeRef owner = findSuccessorRef(key);
+            if (owner.getId() == id) {
+                return call.apply(owner);
+            }
+            try {
+                return call.apply(owner);
+            } catch (ServerException e) {
+                throw e;
+            } catch (RemoteException e) {
+                failure = e;
+                failureDetector.suspect(owner);
+                nodeLogger.logWarning("Owner Node " + owner.getId() + " of key " + key + " is unreachable, routing again");
+            }
+        }
+        throw failure;
+    }
 
-    private Node closestPrecedingNode(int keyHash) throws RemoteException {
-        for (int i = NUM_FINGERS - 1; i >= 0; i--) {
-            if (this.fingerTable.get(i) != null && this.fingerTable.get(i).getID() != this.id) {
-                if (isInRange(keyHash, this.fingerTable.get(i).getID(), this.id)) {
-                    return this.fingerTable.get(i);
-                }
+    // Like atOwner for calls that return null when the node reached does not own the key, as during a join;
+    // routes again after a short pause until a node claims it
+    private <T> T atClaimingOwner(HashedKey key, OwnerCall<T> call) throws RemoteException {
+        for (int attempt = 0; attempt < MAX_OWNER_ATTEMPTS; attempt++) {
+            T result = atOwner(key.getHash(), call);
+            if (result != null) {
+                return result;
+            }
+            try {
+                Thread.sleep(JOIN_RETRY_MIN_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
         }
-        return this.predecessor;
+        throw new RemoteException("No node claimed key " + key.getHash() + " of '" + key.getWord() + "'");
+    }
+
+    private void recordRoute(int hops, int rpcs) {
+        routedLookups.increment();
+        routedHops.add(hops);
+        routedRpcs.add(rpcs);
+        metrics.recordHops(hops);
     }
 
     @Override
     public void setSuccessor(Node newSuccessor) throws RemoteException {
-        this.successor = newSuccessor;
+        setFinger(0, NodeRef.of(newSuccessor));
+        pointersChanged();
     }
 
     @Override
     public void setPredecessor(Node newPredecessor) throws RemoteException {
-        this.predecessor = newPredecessor;
+        this.predecessor = NodeRef.of(newPredecessor);
+        pointersChanged();
     }
 
-    private static final int JOIN_LOCK_TIMEOUT = 10;
-
     private int hash32(String key) {
         return FNV1aHash.hash32(key);
     }
 
-}
\ No newline at end of file
+}
@@ -1,49 +1,255 @@
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.logging.FileHandler;
-import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/* Per-node log file, logs/node-{id}-log.log. Levels are checked before a message is built, and the Supplier
+   overloads only build it when the line will be written. In async mode (the default) a line is a few field
+   writes into a lock-free ring shared by every node in the process, and one background thread formats the
+   timestamps and writes the files; when the ring is full lines are dropped and counted rather than making a
+   request wait. Per-request lines are TRACE and can be sampled: logTrace(key, ...) keeps 1 in traceSampleOneIn
+   keys, chosen by the key itself, so a sampled key is traced on every node it passes. */
 
 public class NodeLogger {
-    private final Logger logger;
+    public enum Level { TRACE, INFO, WARNING, SEVERE }
+
     private static final String LOG_FILE_PATTERN = "node-%d-log.log";
     private static final String LOG_FOLDER = "./logs/";  // Directory where logs are stored
+    private static final int RING_SIZE = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static volatile Level level = Level.INFO;
+    private static volatile int traceSampleOneIn = 1;
+    private static volatile boolean async = true;
+
+    private final Writer file;
+    private boolean dirty;  // Written since the last flush; only touched by the writer thread
 
     public NodeLogger(int nodeId) {
-        this.logger = Logger.getLogger("Node" + nodeId);
-        setupLogger(nodeId);
+        this.file = open(nodeId);
     }
 
-    private void setupLogger(int nodeId) {
-        try {
-            // Ensure the logs directory exists or create it
-            new java.io.File(LOG_FOLDER).mkdirs();
+    // Process-wide; set before the nodes start
+    public static void configure(Level minimum, int traceSampleOneIn, boolean async) {
+        NodeLogger.level = minimum;
+        NodeLogger.traceSampleOneIn = Math.max(1, traceSampleOneIn);
+        NodeLogger.async = async;
+    }
 
-            // Create a new log file
-            FileHandler fileHandler = new FileHandler(LOG_FOLDER + String.format(LOG_FILE_PATTERN, nodeId), true);
-            fileHandler.setFormatter(new SimpleFormatter());
-            logger.addHandler(fileHandler);
-            logger.setUseParentHandlers(false); // Do not use the console handler
-        } catch (IOException e) {
-            logger.severe("Failed to initialize logger: " + e.getMessage());
-        }
+    public static boolean isEnabled(Level candidate) {
+        return candidate.compareTo(level) >= 0;
     }
 
     public void logInfo(String message) {
-        logger.info(String.format("%s [%s] %s: %s%n", getTimestamp(), Thread.currentThread().getName(), "INFO", message));
+        log(Level.INFO, message);
+    }
+
+    public void logInfo(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            log(Level.INFO, message.get());
+        }
     }
 
     public void logWarning(String message) {
-        logger.warning(String.format("%s [%s] %s: %s%n", getTimestamp(), Thread.currentThread().getName(), "WARNING", message));
+        log(Level.WARNING, message);
     }
 
     public void logSevere(String message) {
-        logger.severe(String.format("%s [%s] %s: %s%n", getTimestamp(), Thread.currentThread().getName(), "SEVERE", message));
+        log(Level.SEVERE, message);
     }
 
-    private String getTimestamp() {
-        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date());
+    // A per-request line about key; sampled by the key so all lines about a sampled key are kept
+    public void logTrace(int key, Supplier<String> message) {
+        if (isEnabled(Level.TRACE)) {
+            int oneIn = traceSampleOneIn;
+            if (oneIn == 1 || Integer.remainderUnsigned(key * 0x9e3779b1, oneIn) == 0) {
+                log(Level.TRACE, message.get());
+            }
+        }
+    }
+
+    // A per-request line with no key to sample by, e.g. a batch
+    public void logTrace(Supplier<String> message) {
+        if (isEnabled(Level.TRACE)) {
+            int oneIn = traceSampleOneIn;
+            if (oneIn == 1 || ThreadLocalRandom.current().nextInt(oneIn) == 0) {
+                log(Level.TRACE, message.get());
+            }
+        }
+    }
+
+    // Waits until every line logged before the call is in its file
+    public static void flush() {
+        Ring.INSTANCE.flush();
+    }
+
+    // Lines dropped because the ring was full
+    public static long droppedLines() {
+        return Ring.INSTANCE.dropped.sum();
+    }
+
+    private void log(Level lineLevel, String message) {
+        if (!isEnabled(lineLevel) || file == null) {
+            return;
+        }
+        if (async) {
+            Ring.INSTANCE.publish(this, System.currentTimeMillis(), lineLevel, Thread.currentThread().getName(), message);
+        } else {
+            synchronized (file) {
+                write(System.currentTimeMillis(), lineLevel, Thread.currentThread().getName(), message);
+                flushFile();
+            }
+        }
+    }
+
+    private void write(long timeMillis, Level lineLevel, String thread, String message) {
+        try {
+            TIMESTAMP.formatTo(Instant.ofEpochMilli(timeMillis), file);
+            file.append(" [").append(thread).append("] ").append(lineLevel.name()).append(": ").append(message).append('\n');
+        } catch (IOException e) {
+            System.err.println("Failed to write log line: " + e.getMessage());
+        }
+    }
+
+    private void flushFile() {
+        try {
+            file.flush();
+        } catch (IOException e) {
+            System.err.println("Failed to flush log: " + e.getMessage());
+        }
+    }
+
+    private static Writer open(int nodeId) {
+        try {
+            // Ensure the logs directory exists or create it
+            new java.io.File(LOG_FOLDER).mkdirs();
+            return new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(LOG_FOLDER + String.format(LOG_FILE_PATTERN, nodeId), true), StandardCharsets.UTF_8), 1 << 16);
+        } catch (IOException e) {
+            System.err.println("Failed to initialize logger: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class Slot {
+        volatile long sequence;
+        NodeLogger logger;
+        long timeMillis;
+        Level level;
+        String thread;
+        String message;
+    }
+
+    /* Bounded multi-producer ring (Vyukov's queue): a producer claims a position with one CAS on tail, fills
+       the slot and publishes it by advancing the slot's sequence; the writer thread, the only consumer, takes
+       slots in order and hands them back by moving their sequence one lap ahead. */
+    private static class Ring {
+        static final Ring INSTANCE = new Ring();
+
+        private final Slot[] slots = new Slot[RING_SIZE];
+        private final AtomicLong tail = new AtomicLong();
+        private final LongAdder dropped = new LongAdder();
+        private final Thread writer;
+        private volatile long written;  // Every position before this is in its file
+        private long head;  // Writer thread only
+        private long reportedDropped;
+
+        private Ring() {
+            for (int i = 0; i < RING_SIZE; i++) {
+                slots[i] = new Slot();
+                slots[i].sequence = i;
+            }
+            writer = new Thread(this::drain, "node-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "node-log-flush"));
+        }
+
+        void publish(NodeLogger logger, long timeMillis, Level level, String thread, String message) {
+            long position = tail.get();
+            Slot slot;
+            while (true) {
+                slot = slots[(int) position & (RING_SIZE - 1)];
+                long lag = slot.sequence - position;
+                if (lag == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        break;
+                    }
+                    position = tail.get();
+                } else if (lag < 0) {
+                    dropped.increment();  // A full lap behind: the writer has not freed this slot yet
+                    return;
+                } else {
+                    position = tail.get();  // Another producer took it
+                }
+            }
+            slot.logger = logger;
+            slot.timeMillis = timeMillis;
+            slot.level = level;
+            slot.thread = thread;
+            slot.message = message;
+            slot.sequence = position + 1;
+        }
+
+        void flush() {
+            long target = tail.get();
+            while (written < target && writer.isAlive()) {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(100_000);
+            }
+        }
+
+        private void drain() {
+            List<NodeLogger> touched = new ArrayList<>();
+            while (true) {
+                Slot slot = slots[(int) head & (RING_SIZE - 1)];
+                if (slot.sequence == head + 1) {
+                    NodeLogger logger = slot.logger;
+                    logger.write(slot.timeMillis, slot.level, slot.thread, slot.message);
+                    if (!logger.dirty) {
+                        logger.dirty = true;
+                        touched.add(logger);
+                    }
+                    slot.logger = null;
+                    slot.thread = null;
+                    slot.message = null;
+                    slot.sequence = head + RING_SIZE;
+                    head++;
+                    continue;
+                }
+                // Caught up, or the next producer is still filling its slot: flush what we have and wait
+                reportDropped(touched);
+                for (NodeLogger logger : touched) {
+                    logger.flushFile();
+                    logger.dirty = false;
+                }
+                touched.clear();
+                written = head;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        private void reportDropped(List<NodeLogger> touched) {
+            long total = dropped.sum();
+            if (total != reportedDropped && !touched.isEmpty()) {
+                touched.get(0).write(System.currentTimeMillis(), Level.WARNING, "node-log-writer",
+                        (total - reportedDropped) + " log lines dropped, the log ring was full");
+                reportedDropped = total;
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// A node's live request metrics; NodeImpl.getMetrics() combines them with its other stats into a MetricsSnapshot
+public class NodeMetrics {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    final MetricHistogram lookupLatency = MetricHistogram.latencyNanos();
+    final MetricHistogram insertLatency = MetricHistogram.latencyNanos();
+    final MetricHistogram lookupHops = new MetricHistogram(0, 1, 2, 3, 4, 5, 6, 8, 10, 12, 16, 24, 32);
+    final LongAdder rpcsIn = new LongAdder();
+    final LongAdder wordsSent = new LongAdder();
+    final LongAdder wordsReceived = new LongAdder();
+
+    public void recordLookup(long startNanos) {
+        lookupLatency.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordInsert(long startNanos) {
+        insertLatency.record(System.nanoTime() - startNanos);
+    }
+
+    public void recordHops(int hops) {
+        lookupHops.record(hops);
+    }
+
+    // A Node call served for another process; counted by the NIO transport, RMI has nowhere to hook it in
+    public void recordRpcIn() {
+        rpcsIn.increment();
+    }
+
+    public void recordWordsSent(int words) {
+        wordsSent.add(words);
+    }
+
+    public void recordWordsReceived(int words) {
+        wordsReceived.add(words);
+    }
+
+    void addTo(MetricsSnapshot snapshot) {
+        snapshot.add(lookupLatency.snapshot("chord_lookup_seconds", "Time to answer a lookup taken at this node", NANOS_PER_SECOND));
+        snapshot.add(insertLatency.snapshot("chord_insert_seconds", "Time to store an insert taken at this node", NANOS_PER_SECOND));
+        snapshot.add(lookupHops.snapshot("chord_lookup_hops", "Hops to the owner per routed lookup", 1));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_rpcs_in_total", "Node calls served over NIO", rpcsIn.sum()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_transfer_words_sent_total",
+                "Words handed to other nodes by joins, leaves and range transfers", wordsSent.sum()));
+        snapshot.add(MetricsSnapshot.Metric.counter("chord_transfer_words_received_total",
+                "Words received from other nodes by joins, leaves and range transfers", wordsReceived.sum()));
+    }
+}
@@ -0,0 +1,37 @@
+import java.io.Serializable;
+import java.rmi.RemoteException;
+
+// Cached reference to a ring member so routing decisions never need a remote getID()/getURL()
+public class NodeRef implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final Node node;
+    private final int id;
+    private final String url;
+
+    public NodeRef(Node node, int id, String url) {
+        this.node = node;
+        this.id = id;
+        this.url = url;
+    }
+
+    public static NodeRef of(Node node) throws RemoteException {
+        return new NodeRef(node, node.getID(), node.getURL());
+    }
+
+    public Node getNode() {
+        return node;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String toString() {
+        return url + " (" + id + ")";
+    }
+}
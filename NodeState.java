@@ -0,0 +1,65 @@
+import java.io.Serializable;
+import java.util.List;
+
+// Structured view of one node for ring inspection: its pointers by id, the neighbours it knows, and its shard counts
+public class NodeState implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int id;
+    private final String url;
+    private final int predecessorId;
+    private final int successorId;
+    private final int[] fingerIds;
+    private final List<NodeRef> neighbours;  // Distinct fingers, successor list and predecessor, not the node itself
+    private final long ownedWords;  // Words in (predecessor, id], the range this node answers for
+    private final long storeWords;  // Whole shard store, shared by the virtual nodes of one host
+    private final long storeBytes;
+
+    public NodeState(int id, String url, int predecessorId, int successorId, int[] fingerIds, List<NodeRef> neighbours,
+                     long ownedWords, long storeWords, long storeBytes) {
+        this.id = id;
+        this.url = url;
+        this.predecessorId = predecessorId;
+        this.successorId = successorId;
+        this.fingerIds = fingerIds;
+        this.neighbours = neighbours;
+        this.ownedWords = ownedWords;
+        this.storeWords = storeWords;
+        this.storeBytes = storeBytes;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getPredecessorId() {
+        return predecessorId;
+    }
+
+    public int getSuccessorId() {
+        return successorId;
+    }
+
+    public int[] getFingerIds() {
+        return fingerIds;
+    }
+
+    public List<NodeRef> getNeighbours() {
+        return neighbours;
+    }
+
+    public long getOwnedWords() {
+        return ownedWords;
+    }
+
+    public long getStoreWords() {
+        return storeWords;
+    }
+
+    public long getStoreBytes() {
+        return storeBytes;
+    }
+}
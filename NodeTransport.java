@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+// How nodes are made reachable and how a node URL is turned into a callable Node
+public interface NodeTransport {
+    public void export(NodeImpl node) throws IOException;
+
+    public Node lookup(String url) throws IOException;
+
+    public String nodeURL(int id, int port);
+
+    // URL of the index-th virtual node of host id; index 0 is the host's own URL
+    public String virtualNodeURL(int id, int port, int index);
+
+    public void close();
+}
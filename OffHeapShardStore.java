@@ -0,0 +1,598 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/* Shard storage that keeps UTF-8 words and codec-encoded definitions in direct-memory slabs, so the heap only holds a few
+   primitive arrays per segment no matter how many entries there are. Each of the 16 segments has its own lock,
+   its own slabs and an open-addressing index (linear probing) of int key hashes, long slab addresses and
+   long entry versions.
+   Entries are append-only: overwrites and removes leave garbage that is compacted once it exceeds half the
+   slab space. Entry layout: [int wordLength][int definitionLength or -1][word][definition]
+   For range operations each segment also keeps its live slots sorted by key hash in one long[] (hash << 32 | slot),
+   rebuilt on the first range operation after a key is added, so they binary-search to the range and walk only it. */
+
+public class OffHeapShardStore implements ShardStore {
+    private static final int SEGMENTS = 16;
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+    private static final int MAX_SLAB_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    private final ValueCodec codec;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public OffHeapShardStore() {
+        this(ValueCodec.PLAIN);
+    }
+
+    public OffHeapShardStore(ValueCodec codec) {
+        this.codec = codec;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(codec);
+        }
+    }
+
+    private static int spread(int keyHash) {
+        return keyHash * 0x9E3779B9;
+    }
+
+    private Segment segmentFor(int keyHash) {
+        return segments[spread(keyHash) >>> 28];
+    }
+
+    @Override
+    public String get(String word, int keyHash) {
+        return segmentFor(keyHash).get(word.getBytes(StandardCharsets.UTF_8), keyHash);
+    }
+
+    @Override
+    public VersionedValue getVersioned(String word, int keyHash) {
+        return segmentFor(keyHash).getVersioned(word.getBytes(StandardCharsets.UTF_8), keyHash);
+    }
+
+    @Override
+    public void put(String word, int keyHash, String definition, long version, Runnable whileLocked) {
+        byte[] value = definition == null ? null : codec.encode(definition);
+        segmentFor(keyHash).put(word.getBytes(StandardCharsets.UTF_8), keyHash, value, version, whileLocked);
+    }
+
+    @Override
+    public boolean remove(String word, int keyHash, Runnable whileLocked) {
+        return segmentFor(keyHash).remove(word.getBytes(StandardCharsets.UTF_8), keyHash, whileLocked);
+    }
+
+    @Override
+    public boolean putIfAbsent(String word, int keyHash, String definition, long version, Runnable whileLocked) {
+        byte[] value = definition == null ? null : codec.encode(definition);
+        return segmentFor(keyHash).putIfAbsent(word.getBytes(StandardCharsets.UTF_8), keyHash, value, version, whileLocked);
+    }
+
+    @Override
+    public boolean compareAndSet(String word, int keyHash, long expectedVersion, String definition, long version, Runnable whileLocked) {
+        byte[] value = definition == null ? null : codec.encode(definition);
+        return segmentFor(keyHash).compareAndSet(word.getBytes(StandardCharsets.UTF_8), keyHash, expectedVersion, value, version, whileLocked);
+    }
+
+    @Override
+    public int removeRange(int start, int end, Consumer<String> whileLocked) {
+        int removed = 0;
+        for (Segment segment : segments) {
+            removed += segment.removeRange(start, end, whileLocked);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public long bytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.liveBytes;
+        }
+        return bytes;
+    }
+
+    // Off-heap memory held by the slabs, including garbage not yet compacted
+    public long allocatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.allocatedBytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, String> action) {
+        for (Segment segment : segments) {
+            segment.forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachInRange(int start, int end, EntryVisitor action) {
+        for (Segment segment : segments) {
+            segment.forEachInRange(start, end, action);
+        }
+    }
+
+    // Each segment is walked in ring order twice: the first pass finds the limit-th closest distance from start
+    // across segments with a bounded heap, the second decodes only the entries up to it. Words sharing a hash
+    // have the same distance, so a page never splits them
+    @Override
+    public int scanRange(int start, int end, int limit, EntryVisitor action) {
+        PriorityQueue<Long> closest = new PriorityQueue<>(limit + 1, Collections.reverseOrder());
+        for (Segment segment : segments) {
+            segment.closestInRange(start, end, limit, closest);
+        }
+        long cutoff = closest.size() < limit ? Long.MAX_VALUE : closest.peek();
+        List<ScannedEntry> page = new ArrayList<>(closest.size());
+        for (Segment segment : segments) {
+            segment.collectInRange(start, end, cutoff, page);
+        }
+        page.sort((a, b) -> Long.compare(a.distance, b.distance));
+        for (ScannedEntry entry : page) {
+            action.accept(entry.word, entry.keyHash, entry.definition, entry.version);
+        }
+        return cutoff == Long.MAX_VALUE ? end : (int) (start + 1 + cutoff);
+    }
+
+    // Position of keyHash in ring order after start: start + 1 is 0 and start itself comes last
+    private static long distance(int start, int keyHash) {
+        return Integer.toUnsignedLong(keyHash - start - 1);
+    }
+
+    private static class ScannedEntry {
+        final long distance;
+        final String word;
+        final int keyHash;
+        final String definition;
+        final long version;
+
+        ScannedEntry(long distance, String word, int keyHash, String definition, long version) {
+            this.distance = distance;
+            this.word = word;
+            this.keyHash = keyHash;
+            this.definition = definition;
+            this.version = version;
+        }
+    }
+
+    private static class Segment {
+        private final ValueCodec codec;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private int[] hashes = new int[INITIAL_CAPACITY];
+        private long[] addresses = new long[INITIAL_CAPACITY];  // (slab << 32 | offset) + 1, EMPTY or TOMBSTONE
+        private long[] versions = new long[INITIAL_CAPACITY];  // Kept out of the slabs, so compaction does not touch them
+        private long[] byHash;  // Live slots as (keyHash << 32 | slot) in hash order, or null until the next range operation
+        private final List<ByteBuffer> slabs = new ArrayList<>();
+        private ByteBuffer current;
+        private int nextSlabSize = MIN_SLAB_SIZE;
+        private volatile int size;
+        private int occupied;  // Live entries plus tombstones
+        private volatile long liveBytes;
+        private long allocatedBytes;
+        private long garbageBytes;
+
+        Segment(ValueCodec codec) {
+            this.codec = codec;
+        }
+
+        String get(byte[] word, int keyHash) {
+            lock.readLock().lock();
+            try {
+                int slot = find(word, keyHash);
+                return slot < 0 ? null : readDefinition(addresses[slot]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        VersionedValue getVersioned(byte[] word, int keyHash) {
+            lock.readLock().lock();
+            try {
+                int slot = find(word, keyHash);
+                return slot < 0 ? VersionedValue.ABSENT : new VersionedValue(readDefinition(addresses[slot]), versions[slot]);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean putIfAbsent(byte[] word, int keyHash, byte[] definition, long version, Runnable whileLocked) {
+            if (definition == null) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                if (find(word, keyHash) >= 0) {
+                    return false;
+                }
+                put(word, keyHash, definition, version, whileLocked);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean compareAndSet(byte[] word, int keyHash, long expectedVersion, byte[] definition, long version, Runnable whileLocked) {
+            lock.writeLock().lock();
+            try {
+                int slot = find(word, keyHash);
+                if ((slot < 0 ? 0 : versions[slot]) != expectedVersion) {
+                    return false;
+                }
+                put(word, keyHash, definition, version, whileLocked);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Nothing is decoded except the words that are removed; tombstones leave byHash valid
+        int removeRange(int start, int end, Consumer<String> whileLocked) {
+            lock.writeLock().lock();
+            try {
+                if (byHash == null) {
+                    indexByHash();
+                }
+                int[] removed = new int[1];
+                walkRange(start, end, slot -> {
+                    long address = addresses[slot];
+                    if (whileLocked != null) {
+                        whileLocked.accept(readWord(address));
+                    }
+                    discard(address);
+                    addresses[slot] = TOMBSTONE;
+                    size--;
+                    removed[0]++;
+                    return true;
+                });
+                return removed[0];
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // A null definition removes the word, so it reads as absent with version 0 as in the map store
+        void put(byte[] word, int keyHash, byte[] definition, long version, Runnable whileLocked) {
+            lock.writeLock().lock();
+            try {
+                if (definition == null) {
+                    if (!remove(word, keyHash, whileLocked) && whileLocked != null) {
+                        whileLocked.run();
+                    }
+                    return;
+                }
+                if (occupied + 1 > hashes.length * 3 / 4) {
+                    rehash(size + 1 > hashes.length / 2 ? hashes.length * 2 : hashes.length);
+                }
+                long address = append(word, definition);
+                int slot = find(word, keyHash);
+                if (slot >= 0) {
+                    discard(addresses[slot]);
+                } else {
+                    slot = freeSlot(keyHash);
+                    if (addresses[slot] == EMPTY) {
+                        occupied++;
+                    }
+                    size++;
+                    byHash = null;
+                }
+                hashes[slot] = keyHash;
+                addresses[slot] = address;
+                versions[slot] = version;
+                liveBytes += word.length + definition.length;
+                if (whileLocked != null) {
+                    whileLocked.run();
+                }
+                compactIfMostlyGarbage();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        boolean remove(byte[] word, int keyHash, Runnable whileLocked) {
+            lock.writeLock().lock();
+            try {
+                int slot = find(word, keyHash);
+                if (slot < 0) {
+                    return false;
+                }
+                discard(addresses[slot]);
+                addresses[slot] = TOMBSTONE;
+                size--;
+                if (whileLocked != null) {
+                    whileLocked.run();
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void forEach(BiConsumer<String, String> action) {
+            lock.readLock().lock();
+            try {
+                for (long address : addresses) {
+                    if (address != EMPTY && address != TOMBSTONE) {
+                        action.accept(readWord(address), readDefinition(address));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void forEachInRange(int start, int end, EntryVisitor action) {
+            lockIndexed();
+            try {
+                walkRange(start, end, slot -> {
+                    long address = addresses[slot];
+                    action.accept(readWord(address), hashes[slot], readDefinition(address), versions[slot]);
+                    return true;
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // The walk is in order of distance from start, so it stops at the first entry that cannot make the page
+        void closestInRange(int start, int end, int limit, PriorityQueue<Long> closest) {
+            lockIndexed();
+            try {
+                walkRange(start, end, slot -> {
+                    long distance = distance(start, hashes[slot]);
+                    if (closest.size() < limit) {
+                        closest.add(distance);
+                    } else if (distance < closest.peek()) {
+                        closest.poll();
+                        closest.add(distance);
+                    } else {
+                        return false;
+                    }
+                    return true;
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void collectInRange(int start, int end, long cutoff, List<ScannedEntry> page) {
+            lockIndexed();
+            try {
+                walkRange(start, end, slot -> {
+                    long distance = distance(start, hashes[slot]);
+                    if (distance > cutoff) {
+                        return false;
+                    }
+                    long address = addresses[slot];
+                    page.add(new ScannedEntry(distance, readWord(address), hashes[slot], readDefinition(address), versions[slot]));
+                    return true;
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Takes the read lock with byHash built, rebuilding it first under the write lock if a key was added
+        private void lockIndexed() {
+            lock.readLock().lock();
+            if (byHash != null) {
+                return;
+            }
+            lock.readLock().unlock();
+            lock.writeLock().lock();
+            try {
+                if (byHash == null) {
+                    indexByHash();
+                }
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void indexByHash() {
+            long[] sorted = new long[size];
+            int count = 0;
+            for (int slot = 0; slot < addresses.length; slot++) {
+                if (addresses[slot] != EMPTY && addresses[slot] != TOMBSTONE) {
+                    sorted[count++] = (long) hashes[slot] << 32 | slot;
+                }
+            }
+            Arrays.sort(sorted);
+            byHash = sorted;
+        }
+
+        // Live slots with hashes in (start, end], in ring order from start, until visit returns false.
+        // Entries removed since the last rebuild are tombstones and are skipped
+        private void walkRange(int start, int end, IntPredicate visit) {
+            long[] sorted = byHash;
+            int from = firstAbove(sorted, start);
+            if (start < end) {
+                walk(sorted, from, end, visit);
+            } else if (walk(sorted, from, Integer.MAX_VALUE, visit)) {
+                walk(sorted, 0, end, visit);
+            }
+        }
+
+        private boolean walk(long[] sorted, int from, int end, IntPredicate visit) {
+            for (int i = from; i < sorted.length && (int) (sorted[i] >> 32) <= end; i++) {
+                int slot = (int) sorted[i];
+                long address = addresses[slot];
+                if (address != EMPTY && address != TOMBSTONE && !visit.test(slot)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int firstAbove(long[] sorted, int keyHash) {
+            int low = 0;
+            int high = sorted.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if ((int) (sorted[middle] >> 32) <= keyHash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int find(byte[] word, int keyHash) {
+            int mask = hashes.length - 1;
+            for (int slot = spread(keyHash) & mask; ; slot = (slot + 1) & mask) {
+                long address = addresses[slot];
+                if (address == EMPTY) {
+                    return -1;
+                }
+                if (address != TOMBSTONE && hashes[slot] == keyHash && wordEquals(address, word)) {
+                    return slot;
+                }
+            }
+        }
+
+        private int freeSlot(int keyHash) {
+            int mask = hashes.length - 1;
+            int slot = spread(keyHash) & mask;
+            while (addresses[slot] != EMPTY && addresses[slot] != TOMBSTONE) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash(int capacity) {
+            int[] oldHashes = hashes;
+            long[] oldAddresses = addresses;
+            long[] oldVersions = versions;
+            hashes = new int[capacity];
+            addresses = new long[capacity];
+            versions = new long[capacity];
+            byHash = null;
+            occupied = 0;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                if (oldAddresses[i] != EMPTY && oldAddresses[i] != TOMBSTONE) {
+                    int slot = freeSlot(oldHashes[i]);
+                    hashes[slot] = oldHashes[i];
+                    addresses[slot] = oldAddresses[i];
+                    versions[slot] = oldVersions[i];
+                    occupied++;
+                }
+            }
+        }
+
+        private long append(byte[] word, byte[] definition) {
+            int length = 8 + word.length + (definition == null ? 0 : definition.length);
+            if (current == null || current.remaining() < length) {
+                current = ByteBuffer.allocateDirect(Math.max(nextSlabSize, length));
+                slabs.add(current);
+                allocatedBytes += current.capacity();
+                nextSlabSize = Math.min(nextSlabSize * 2, MAX_SLAB_SIZE);
+            }
+            int offset = current.position();
+            current.putInt(word.length).putInt(definition == null ? -1 : definition.length).put(word);
+            if (definition != null) {
+                current.put(definition);
+            }
+            return (((long) (slabs.size() - 1) << 32) | offset) + 1;
+        }
+
+        private void discard(long address) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            int wordLength = slab.getInt(offset);
+            int definitionLength = Math.max(0, slab.getInt(offset + 4));
+            garbageBytes += 8 + wordLength + definitionLength;
+            liveBytes -= wordLength + definitionLength;
+        }
+
+        private void compactIfMostlyGarbage() {
+            if (allocatedBytes <= MIN_SLAB_SIZE || garbageBytes * 2 < allocatedBytes) {
+                return;
+            }
+            List<ByteBuffer> oldSlabs = new ArrayList<>(slabs);
+            long[] oldAddresses = addresses.clone();
+            slabs.clear();
+            current = null;
+            allocatedBytes = 0;
+            garbageBytes = 0;
+            nextSlabSize = MIN_SLAB_SIZE;
+            for (int i = 0; i < oldAddresses.length; i++) {
+                long address = oldAddresses[i];
+                if (address != EMPTY && address != TOMBSTONE) {
+                    ByteBuffer slab = oldSlabs.get((int) ((address - 1) >>> 32));
+                    int offset = offset(address);
+                    byte[] word = new byte[slab.getInt(offset)];
+                    int definitionLength = slab.getInt(offset + 4);
+                    slab.get(offset + 8, word);
+                    byte[] definition = null;
+                    if (definitionLength >= 0) {
+                        definition = new byte[definitionLength];
+                        slab.get(offset + 8 + word.length, definition);
+                    }
+                    addresses[i] = append(word, definition);
+                }
+            }
+        }
+
+        private boolean wordEquals(long address, byte[] word) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            if (slab.getInt(offset) != word.length) {
+                return false;
+            }
+            for (int i = 0; i < word.length; i++) {
+                if (slab.get(offset + 8 + i) != word[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String readWord(long address) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            byte[] word = new byte[slab.getInt(offset)];
+            slab.get(offset + 8, word);
+            return new String(word, StandardCharsets.UTF_8);
+        }
+
+        private String readDefinition(long address) {
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            int definitionLength = slab.getInt(offset + 4);
+            if (definitionLength < 0) {
+                return null;
+            }
+            byte[] definition = new byte[definitionLength];
+            slab.get(offset + 8 + slab.getInt(offset), definition);
+            return codec.decode(definition);
+        }
+
+        private ByteBuffer slab(long address) {
+            return slabs.get((int) ((address - 1) >>> 32));
+        }
+
+        private static int offset(long address) {
+            return (int) (address - 1);
+        }
+    }
+}
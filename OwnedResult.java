@@ -0,0 +1,22 @@
+import java.io.Serializable;
+
+// Reply to a request sent straight to the presumed owner (or, for lookupIfReplica, a presumed replica);
+// owner == false means "not mine, refresh your view"
+public class OwnedResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final boolean owner;
+    private final String definition;
+
+    public OwnedResult(boolean owner, String definition) {
+        this.owner = owner;
+        this.definition = definition;
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+}
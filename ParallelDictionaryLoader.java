@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Streams the dictionary file through a FileChannel and pipelines insertAll batches to their owners with
+   AsyncNode (the worker pool only carries blocking RMI calls). The reader blocks once maxInFlight batches
+   are outstanding, so memory stays bounded for any file size. */
+
+public class ParallelDictionaryLoader {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final RingClient ring;
+    private final int workers;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final Semaphore inFlight;
+    private final ConcurrentLinkedQueue<Long> batchLatencies = new ConcurrentLinkedQueue<>();
+    private final AtomicLong wordsLoaded = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    public ParallelDictionaryLoader(RingClient ring, int workers, int maxInFlight, int batchSize) {
+        this.ring = ring;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public void load(String dictionaryFile) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(Paths.get(dictionaryFile), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            Map<String, String> batch = new LinkedHashMap<>();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        batch = parseLine(line, lineLength, batch, pool);
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                buffer.clear();
+            }
+            if (lineLength > 0) {
+                batch = parseLine(line, lineLength, batch, pool);
+            }
+            if (!batch.isEmpty()) {
+                submit(batch, pool);
+            }
+        } finally {
+            inFlight.acquire(maxInFlight);  // Wait for the last batches to complete
+            pool.shutdown();
+        }
+        printSummary(System.nanoTime() - start);
+    }
+
+    // Same format as DictionaryLoader: "word : definition", definition ends at the next ':'
+    private Map<String, String> parseLine(byte[] line, int length, Map<String, String> batch, ExecutorService pool) throws InterruptedException {
+        int colon = indexOf(line, 0, length, (byte) ':');
+        if (colon < 0) {
+            return batch;  // Skip malformed lines
+        }
+        int definitionEnd = indexOf(line, colon + 1, length, (byte) ':');
+        String word = trimmed(line, 0, colon);
+        String definition = trimmed(line, colon + 1, definitionEnd < 0 ? length : definitionEnd);
+        if (definition.isEmpty()) {
+            return batch;
+        }
+        batch.put(word, definition);
+        if (batch.size() >= batchSize) {
+            submit(batch, pool);
+            return new LinkedHashMap<>();
+        }
+        return batch;
+    }
+
+    private void submit(Map<String, String> batch, ExecutorService pool) throws InterruptedException {
+        inFlight.acquire();  // Back-pressure: the reader waits while maxInFlight batches are outstanding
+        long sent = System.nanoTime();
+        ring.insertAllAsync(batch, pool).whenComplete((inserted, error) -> {
+            if (error == null) {
+                wordsLoaded.addAndGet(inserted);
+                batchLatencies.add(System.nanoTime() - sent);
+            } else {
+                failedBatches.incrementAndGet();
+                System.err.println("Failed to insert batch of " + batch.size() + " words: " + error.getMessage());
+            }
+            inFlight.release();
+        });
+    }
+
+    private void printSummary(long elapsedNanos) {
+        long[] latencies = batchLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        double seconds = elapsedNanos / 1e9;
+        double p99Millis = latencies.length == 0 ? 0.0 : latencies[(int) Math.ceil(latencies.length * 0.99) - 1] / 1e6;
+        System.out.printf("Loaded %d words in %.2fs (%.0f words/sec) using %d workers, max %d in-flight batches of %d%n",
+                wordsLoaded.get(), seconds, wordsLoaded.get() / seconds, workers, maxInFlight, batchSize);
+        System.out.printf("Batches: %d ok, %d failed, p99 batch latency %.2f ms%n", latencies.length, failedBatches.get(), p99Millis);
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte target) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String trimmed(byte[] bytes, int from, int to) {
+        while (from < to && (bytes[from] & 0xff) <= ' ') from++;
+        while (to > from && (bytes[to - 1] & 0xff) <= ' ') to--;
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Waiting on and reconciling the replies of replica calls issued in parallel
+public class Quorum {
+
+    // Completes with the first `needed` results, or fails as soon as too many calls have failed for that to happen
+    public static <T> CompletableFuture<List<T>> first(List<CompletableFuture<T>> calls, int needed) {
+        CompletableFuture<List<T>> quorum = new CompletableFuture<>();
+        if (needed <= 0) {
+            quorum.complete(Collections.emptyList());
+            return quorum;
+        }
+        List<T> results = Collections.synchronizedList(new ArrayList<>(needed));
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<T> call : calls) {
+            call.whenComplete((result, error) -> {
+                if (error == null) {
+                    results.add(result);
+                    if (results.size() == needed) {
+                        quorum.complete(new ArrayList<>(results));
+                    }
+                } else if (failed.incrementAndGet() > calls.size() - needed) {
+                    quorum.completeExceptionally(error);
+                }
+            });
+        }
+        return quorum;
+    }
+
+    public static <T> List<T> await(List<CompletableFuture<T>> calls, int needed, String what) throws RemoteException {
+        try {
+            return first(calls, needed).join();
+        } catch (CompletionException e) {
+            throw new RemoteException(what + " reached fewer than " + needed + " of " + calls.size() + " replicas", e.getCause());
+        }
+    }
+
+    // Entries carry no versions, so the most common answer wins and ties go to the earliest reply
+    public static String resolve(List<String> answers) {
+        Map<String, Integer> votes = new HashMap<>();
+        String best = null;
+        int bestVotes = 0;
+        for (String answer : answers) {
+            int count = votes.merge(answer, 1, Integer::sum);
+            if (count > bestVotes) {
+                best = answer;
+                bestVotes = count;
+            }
+        }
+        return best;
+    }
+}
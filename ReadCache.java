@@ -0,0 +1,181 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* A node's cache of words owned elsewhere, so a hot word is answered where its lookups arrive instead of at
+   its owner every time. Definitions live in LRU segments bounded by entry count and expire after ttlMillis.
+   The owner invalidates copies when the word is written, and the TTL bounds how stale a copy can get if an
+   invalidation is lost or the word changes owner. Owner locations are cached per range,
+   (predecessor, owner], so one entry routes every key the owner holds. */
+
+public class ReadCache {
+    private static final int SEGMENTS = 16;
+    private static final int ENTRY_OVERHEAD_BYTES = 96;  // Map node, entry object and two string headers
+
+    private static class Entry {
+        final String definition;  // null for an invalidation marker
+        final long storedAt;
+        final long expiresAt;
+
+        Entry(String definition, long storedAt, long expiresAt) {
+            this.definition = definition;
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Location {
+        final int rangeStart;
+        final NodeRef owner;
+        final long expiresAt;
+
+        Location(int rangeStart, NodeRef owner, long expiresAt) {
+            this.rangeStart = rangeStart;
+            this.owner = owner;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private class Segment extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        Segment() {
+            super(16, 0.75f, true);  // Access order: the eldest entry is the least recently used
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntriesPerSegment) {
+                evictions.increment();
+                bytes.add(-bytesOf(eldest.getKey(), eldest.getValue()));
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final int maxEntriesPerSegment;
+    private final long ttlNanos;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ConcurrentSkipListMap<Integer, Location> locations = new ConcurrentSkipListMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder locationHits = new LongAdder();
+    private final LongAdder locationMisses = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    public ReadCache(int maxEntries, long ttlMillis) {
+        this.maxEntriesPerSegment = Math.max(1, maxEntries / SEGMENTS);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    // The cached definition, or null on a miss
+    public String get(String word) {
+        Segment segment = segmentOf(word);
+        synchronized (segment) {
+            Entry entry = segment.get(word);
+            if (entry != null && entry.definition != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.increment();
+                    return entry.definition;
+                }
+                segment.remove(word);
+                bytes.add(-bytesOf(word, entry));
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    // readStartedAt is System.nanoTime() from before the read was sent; a copy the owner invalidated since is dropped
+    public void put(String word, String definition, long readStartedAt) {
+        if (definition == null) {
+            return;
+        }
+        Segment segment = segmentOf(word);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry previous = segment.get(word);
+            if (previous != null && previous.definition == null && previous.storedAt - readStartedAt >= 0
+                    && now - previous.expiresAt < 0) {
+                return;  // Invalidated while our read was in flight
+            }
+            Entry entry = new Entry(definition, now, now + ttlNanos);
+            replace(segment, word, previous, entry);
+        }
+    }
+
+    // Leaves a marker for ttlMillis so a read that started before the invalidation cannot put the old value back
+    public void invalidate(String word) {
+        Segment segment = segmentOf(word);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            replace(segment, word, segment.get(word), new Entry(null, now, now + ttlNanos));
+        }
+        invalidations.increment();
+    }
+
+    // The cached owner of keyHash, or null
+    public NodeRef owner(int keyHash) {
+        Map.Entry<Integer, Location> candidate = locations.ceilingEntry(keyHash);
+        if (candidate == null) {
+            candidate = locations.firstEntry();  // Past the last cached owner, wrap around
+        }
+        if (candidate != null) {
+            Location location = candidate.getValue();
+            if (System.nanoTime() - location.expiresAt >= 0) {
+                locations.remove(candidate.getKey(), location);
+            } else if (RingRange.contains(keyHash, location.rangeStart, location.owner.getId())) {
+                locationHits.increment();
+                return location.owner;
+            }
+        }
+        locationMisses.increment();
+        return null;
+    }
+
+    public void putOwner(int rangeStart, NodeRef owner) {
+        locations.put(owner.getId(), new Location(rangeStart, owner, System.nanoTime() + ttlNanos));
+    }
+
+    // The node no longer owns what we thought, or is unreachable
+    public void forgetOwner(NodeRef owner) {
+        locations.remove(owner.getId());
+    }
+
+    public CacheStats stats() {
+        long entries = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                entries += segment.size();
+            }
+        }
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum(),
+                locationHits.sum(), locationMisses.sum(), entries, bytes.sum());
+    }
+
+    private void replace(Segment segment, String word, Entry previous, Entry entry) {
+        if (previous != null) {
+            bytes.add(-bytesOf(word, previous));
+        }
+        bytes.add(bytesOf(word, entry));
+        segment.put(word, entry);
+    }
+
+    private Segment segmentOf(String word) {
+        return segments[(word.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private static long bytesOf(String word, Entry entry) {
+        return ENTRY_OVERHEAD_BYTES + 2L * word.length() + (entry.definition == null ? 0 : 2L * entry.definition.length());
+    }
+}
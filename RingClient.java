@@ -0,0 +1,307 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Smart client: caches the ring membership, resolves owners locally with FNV1aHash.hash32 and a
+   binary search over sorted node ids, and talks to the owner directly. A "not mine" reply or a
+   failed call refreshes the view from any reachable member. With replication, reads go to the owner
+   and the replicationFactor - 1 members after it, so a hot key is spread over its replicas and a dead
+   owner does not stop reads. */
+
+public class RingClient {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Node entryNode;
+    private volatile int[] ids = new int[0];
+    private volatile NodeRef[] members = new NodeRef[0];
+    private final AtomicLong directHits = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile int replicationFactor = 1;
+    private volatile ConsistencyLevel readConsistency = ConsistencyLevel.ONE;
+
+    public RingClient(Node entryNode) throws RemoteException {
+        this.entryNode = entryNode;
+        refresh();
+    }
+
+    // Must match the nodes' --replicas; readConsistency picks how many replicas each lookup waits for
+    public void setReplication(int replicationFactor, ConsistencyLevel readConsistency) {
+        this.replicationFactor = replicationFactor;
+        this.readConsistency = readConsistency;
+    }
+
+    public synchronized void refresh() throws RemoteException {
+        List<NodeRef> ring = null;
+        RemoteException failure = null;
+        for (NodeRef member : members) {  // Prefer any known member so a dead entry node does not matter
+            try {
+                ring = member.getNode().getRingMembers();
+                break;
+            } catch (RemoteException e) {
+                failure = e;
+            }
+        }
+        if (ring == null) {
+            try {
+                ring = entryNode.getRingMembers();
+            } catch (RemoteException e) {
+                throw failure != null ? failure : e;
+            }
+        }
+        ring.sort(Comparator.comparingInt(NodeRef::getId));
+        NodeRef[] sorted = ring.toArray(new NodeRef[0]);
+        int[] sortedIds = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sortedIds[i] = sorted[i].getId();
+        }
+        this.members = sorted;
+        this.ids = sortedIds;
+        refreshes.incrementAndGet();
+    }
+
+    public NodeRef ownerOf(int keyHash) {
+        int[] currentIds = ids;
+        NodeRef[] currentMembers = members;
+        int idx = Arrays.binarySearch(currentIds, keyHash);
+        if (idx < 0) {
+            idx = -idx - 1;
+            if (idx == currentIds.length) {
+                idx = 0;  // Past the largest id, wrap around to the first node
+            }
+        }
+        return currentMembers[idx];
+    }
+
+    // The owner followed by the next members clockwise, at most replicationFactor of them
+    public List<NodeRef> replicasOf(int keyHash) {
+        int[] currentIds = ids;
+        NodeRef[] currentMembers = members;
+        int idx = Arrays.binarySearch(currentIds, keyHash);
+        if (idx < 0) {
+            idx = (-idx - 1) % currentIds.length;
+        }
+        int count = Math.min(replicationFactor, currentMembers.length);
+        List<NodeRef> replicas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            replicas.add(currentMembers[(idx + i) % currentMembers.length]);
+        }
+        return replicas;
+    }
+
+    public String lookup(String word) throws RemoteException {
+        HashedKey key = HashedKey.of(word);  // Hashed once here, the owner uses it as is
+        int keyHash = key.getHash();
+        if (replicationFactor > 1) {
+            return readConsistency == ConsistencyLevel.ONE ? lookupAnyReplica(key) : lookupQuorum(key);
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                OwnedResult result = ownerOf(keyHash).getNode().lookupIfOwner(key);
+                if (result.isOwner()) {
+                    directHits.incrementAndGet();
+                    return result.getDefinition();
+                }
+            } catch (RemoteException e) {
+                // Owner unreachable, fall through to refresh
+            }
+            refresh();
+        }
+        return entryNode.lookup(key);  // View keeps changing under us, let the ring route it
+    }
+
+    // Starts at a different replica each call and moves on when one is unreachable. A node that is no longer
+    // one of the key's replicas (after a join, or a death we have not seen) says so, and the view is refreshed.
+    private String lookupAnyReplica(HashedKey key) throws RemoteException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            List<NodeRef> replicas = replicasOf(key.getHash());
+            int first = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+            for (int i = 0; i < replicas.size(); i++) {
+                try {
+                    OwnedResult result = replicas.get((first + i) % replicas.size()).getNode().lookupIfReplica(key);
+                    if (result.isOwner()) {
+                        directHits.incrementAndGet();
+                        return result.getDefinition();
+                    }
+                    break;  // Stale view, the others may be wrong too
+                } catch (RemoteException e) {
+                    // Unreachable, try the next replica
+                }
+            }
+            refreshQuietly();
+        }
+        return entryNode.lookup(key);  // View keeps changing under us, let the ring route it
+    }
+
+    // Only answers from nodes that still replicate the key count towards the quorum
+    private String lookupQuorum(HashedKey key) throws RemoteException {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            List<NodeRef> replicas = replicasOf(key.getHash());
+            List<CompletableFuture<OwnedResult>> calls = new ArrayList<>(replicas.size());
+            for (NodeRef replica : replicas) {
+                calls.add(AsyncNode.of(replica.getNode()).lookupIfReplica(key));
+            }
+            List<OwnedResult> replies;
+            try {
+                replies = Quorum.await(calls, readConsistency.required(replicas.size()), "Read of '" + key.getWord() + "'");
+            } catch (RemoteException e) {
+                refreshQuietly();
+                continue;
+            }
+            List<String> answers = new ArrayList<>(replies.size());
+            for (OwnedResult reply : replies) {
+                if (reply.isOwner()) {
+                    answers.add(reply.getDefinition());
+                }
+            }
+            if (answers.size() == replies.size()) {
+                return Quorum.resolve(answers);
+            }
+            refreshQuietly();
+        }
+        return entryNode.lookup(key);  // The entry node reads at the ring's own consistency level
+    }
+
+    // A dead node can leave the ring unwalkable until it is repaired; keep the old view until then
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RemoteException e) {
+            // Try again on the next failure
+        }
+    }
+
+    public void insert(String word, String definition) throws RemoteException {
+        HashedKey key = HashedKey.of(word);
+        int keyHash = key.getHash();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                if (ownerOf(keyHash).getNode().insertIfOwner(key, definition)) {
+                    directHits.incrementAndGet();
+                    return;
+                }
+            } catch (RemoteException e) {
+                // Owner unreachable, fall through to refresh
+            }
+            refresh();
+        }
+        entryNode.insert(word, definition);
+    }
+
+    public VersionedValue lookupVersioned(String word) throws RemoteException {
+        HashedKey key = HashedKey.of(word);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                VersionedValue value = ownerOf(key.getHash()).getNode().lookupVersionedIfOwner(key);
+                if (value != null) {
+                    directHits.incrementAndGet();
+                    return value;
+                }
+            } catch (RemoteException e) {
+                // Owner unreachable, fall through to refresh
+            }
+            refresh();
+        }
+        return entryNode.lookupVersioned(word);
+    }
+
+    public CasResult putIfAbsent(String word, String definition) throws RemoteException {
+        return compareAndSet(word, 0, definition);
+    }
+
+    // Not retried on a mismatch: the result carries the current version for the caller's next attempt
+    public CasResult compareAndSet(String word, long expectedVersion, String definition) throws RemoteException {
+        HashedKey key = HashedKey.of(word);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                CasResult result = ownerOf(key.getHash()).getNode().casIfOwner(key, expectedVersion, definition);
+                if (result != null) {
+                    directHits.incrementAndGet();
+                    return result;
+                }
+            } catch (RemoteException e) {
+                // Owner unreachable, fall through to refresh
+            }
+            refresh();
+        }
+        return entryNode.compareAndSet(word, expectedVersion, definition);
+    }
+
+    public CasResult removeIfVersion(String word, long expectedVersion) throws RemoteException {
+        return compareAndSet(word, expectedVersion, null);
+    }
+
+    // Groups by the cached owner; a stale view is still correct because the owner routes leftovers itself
+    public int insertAll(Map<String, String> entries) throws RemoteException {
+        int inserted = 0;
+        for (Map.Entry<NodeRef, HashedEntries> group : groupEntriesByOwner(entries).entrySet()) {
+            inserted += group.getKey().getNode().insertAll(group.getValue());
+        }
+        return inserted;
+    }
+
+    // Sends every owner's share at once; over NIO nothing blocks, over RMI the calls run on blockingCalls
+    public CompletableFuture<Integer> insertAllAsync(Map<String, String> entries, Executor blockingCalls) {
+        List<CompletableFuture<Integer>> parts = new ArrayList<>();
+        for (Map.Entry<NodeRef, HashedEntries> group : groupEntriesByOwner(entries).entrySet()) {
+            parts.add(AsyncNode.of(group.getKey().getNode(), blockingCalls).insertAll(group.getValue()));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> parts.stream().mapToInt(CompletableFuture::join).sum());
+    }
+
+    public List<String> lookupAll(Collection<String> words) throws RemoteException {
+        List<String> wordList = new ArrayList<>(words);
+        Map<String, String> definitions = new LinkedHashMap<>();
+        for (Map.Entry<NodeRef, List<String>> group : groupByOwner(wordList).entrySet()) {
+            List<String> found = group.getKey().getNode().lookupAll(group.getValue());
+            for (int i = 0; i < found.size(); i++) {
+                definitions.put(group.getValue().get(i), found.get(i));
+            }
+        }
+        List<String> results = new ArrayList<>(wordList.size());
+        for (String word : wordList) {
+            results.add(definitions.get(word));
+        }
+        return results;
+    }
+
+    private Map<NodeRef, List<String>> groupByOwner(Collection<String> words) {
+        Map<NodeRef, List<String>> groups = new LinkedHashMap<>();
+        for (String word : words) {
+            groups.computeIfAbsent(ownerOf(FNV1aHash.hash32(word)), k -> new ArrayList<>()).add(word);
+        }
+        return groups;
+    }
+
+    // Each batch carries the hashes used to group it, so the owner does not compute them again
+    private Map<NodeRef, HashedEntries> groupEntriesByOwner(Map<String, String> entries) {
+        Map<NodeRef, HashedEntries> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            int keyHash = FNV1aHash.hash32(entry.getKey());
+            groups.computeIfAbsent(ownerOf(keyHash), k -> new HashedEntries()).add(entry.getKey(), keyHash, entry.getValue());
+        }
+        return groups;
+    }
+
+    public int getRingSize() {
+        return members.length;
+    }
+
+    public long getDirectHits() {
+        return directHits.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/* Snapshot of the whole ring taken with concurrent getState() calls. Starting from one node, every round asks
+   all nodes first named in the previous round at once, so the snapshot takes one call latency per round and
+   the rounds shrink quickly because every node names its ~log N fingers. The states are then ordered by
+   ring position and checked against each other: successor and predecessor pointers, every finger against
+   the true successor of its start, and whether the nodes' owned ranges cover the ring without overlap. */
+
+public class RingInspector {
+    private static final long RING_SIZE = 1L << NodeImpl.NUM_FINGERS;
+    private static final int MAX_NODES = 65536;  // Stops a snapshot of a ring that keeps naming new nodes
+
+    private final List<NodeState> states;  // By ring position
+    private final Map<Integer, Node> nodes;
+    private final List<String> unreachable;
+    private final int rounds;
+    private final long elapsedNanos;
+    private final int[] ids;
+
+    private RingInspector(List<NodeState> states, Map<Integer, Node> nodes, List<String> unreachable, int rounds, long elapsedNanos) {
+        this.states = states;
+        this.nodes = nodes;
+        this.unreachable = unreachable;
+        this.rounds = rounds;
+        this.elapsedNanos = elapsedNanos;
+        this.ids = new int[states.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = states.get(i).getId();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java RingInspector <nodeURL> [reportFile]");
+            return;
+        }
+        RingInspector inspector = inspect(Transports.lookup(args[0]));
+        if (args.length > 1) {
+            inspector.writeReport(args[1]);
+        } else {
+            System.out.print(inspector.report());
+        }
+        System.exit(0);
+    }
+
+    public static RingInspector inspect(Node entry) throws RemoteException {
+        long start = System.nanoTime();
+        Map<Integer, NodeState> found = new HashMap<>();
+        Map<Integer, String> failed = new LinkedHashMap<>();
+        Map<Integer, NodeRef> frontier = new LinkedHashMap<>();
+        Map<Integer, Node> nodes = new HashMap<>();
+        NodeState first = entry.getState();
+        found.put(first.getId(), first);
+        nodes.put(first.getId(), entry);
+        addUnseen(first, found, failed, frontier);
+        int rounds = 1;
+        while (!frontier.isEmpty() && found.size() < MAX_NODES) {
+            Map<Integer, CompletableFuture<NodeState>> calls = new LinkedHashMap<>();
+            for (NodeRef next : frontier.values()) {
+                calls.put(next.getId(), AsyncNode.of(next.getNode()).getState());
+            }
+            for (NodeRef next : frontier.values()) {
+                try {
+                    found.put(next.getId(), calls.get(next.getId()).join());
+                    nodes.put(next.getId(), next.getNode());
+                } catch (RuntimeException e) {
+                    failed.put(next.getId(), next.getUrl());  // Dead or unreachable; its range shows up as a gap
+                }
+            }
+            frontier = new LinkedHashMap<>();
+            for (Map.Entry<Integer, CompletableFuture<NodeState>> call : calls.entrySet()) {
+                NodeState state = found.get(call.getKey());
+                if (state != null) {
+                    addUnseen(state, found, failed, frontier);
+                }
+            }
+            rounds++;
+        }
+        List<NodeState> states = new ArrayList<>(found.values());
+        states.sort(Comparator.comparingInt(NodeState::getId));
+        return new RingInspector(states, nodes, new ArrayList<>(failed.values()), rounds, System.nanoTime() - start);
+    }
+
+    private static void addUnseen(NodeState state, Map<Integer, NodeState> found, Map<Integer, String> failed,
+                                  Map<Integer, NodeRef> frontier) {
+        for (NodeRef neighbour : state.getNeighbours()) {
+            int id = neighbour.getId();
+            if (!found.containsKey(id) && !failed.containsKey(id)) {
+                frontier.putIfAbsent(id, neighbour);
+            }
+        }
+    }
+
+    public List<NodeState> getStates() {
+        return states;
+    }
+
+    public Node getNode(NodeState state) {
+        return nodes.get(state.getId());
+    }
+
+    public List<String> getUnreachable() {
+        return unreachable;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int wrongSuccessors() {
+        int wrong = 0;
+        for (int i = 0; i < ids.length; i++) {
+            wrong += states.get(i).getSuccessorId() == ids[(i + 1) % ids.length] ? 0 : 1;
+        }
+        return wrong;
+    }
+
+    public int wrongPredecessors() {
+        int wrong = 0;
+        for (int i = 0; i < ids.length; i++) {
+            wrong += states.get(i).getPredecessorId() == ids[(i - 1 + ids.length) % ids.length] ? 0 : 1;
+        }
+        return wrong;
+    }
+
+    public int wrongFingers(NodeState state) {
+        int wrong = 0;
+        int[] fingers = state.getFingerIds();
+        for (int i = 0; i < fingers.length; i++) {
+            if (fingers[i] != ownerOf((int) ((state.getId() + (1L << i)) % RING_SIZE))) {
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+
+    // Sum of the owned ranges' lengths minus the ring: 0 when (predecessor, id] of all nodes tile the ring,
+    // positive when ranges overlap, negative when keys between two nodes are owned by nobody
+    public long ownershipOverlap() {
+        long covered = 0;
+        for (NodeState state : states) {
+            long arc = Math.floorMod((long) state.getId() - state.getPredecessorId(), RING_SIZE);
+            covered += arc == 0 ? RING_SIZE : arc;
+        }
+        return covered - RING_SIZE;
+    }
+
+    // Id of the first node at or after key
+    public int ownerOf(int key) {
+        int index = Arrays.binarySearch(ids, key);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return ids[index % ids.length];
+    }
+
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Ring of %d nodes, inspected in %.1f ms over %d rounds of parallel calls%n",
+                states.size(), elapsedNanos / 1e6, rounds));
+        for (String url : unreachable) {
+            sb.append("Unreachable: ").append(url).append('\n');
+        }
+        sb.append(String.format("%-36s %-11s %-5s %-5s %-8s %-10s %-9s %-11s %-11s%n", "node", "id", "pred", "succ",
+                "fingers", "ring share", "owned", "store words", "store bytes"));
+        long ownedWords = 0;
+        int wrongFingers = 0;
+        for (int i = 0; i < states.size(); i++) {
+            NodeState state = states.get(i);
+            boolean predecessorOk = state.getPredecessorId() == ids[(i - 1 + ids.length) % ids.length];
+            boolean successorOk = state.getSuccessorId() == ids[(i + 1) % ids.length];
+            int wrong = wrongFingers(state);
+            long arc = ids.length == 1 ? RING_SIZE : Math.floorMod((long) state.getId() - ids[(i - 1 + ids.length) % ids.length], RING_SIZE);
+            sb.append(String.format("%-36s %-11d %-5s %-5s %-8s %-10s %-9d %-11d %-11d%n", state.getUrl(), state.getId(),
+                    predecessorOk ? "ok" : "WRONG", successorOk ? "ok" : "WRONG", wrong == 0 ? "ok" : wrong + " wrong",
+                    String.format("%.2f%%", 100.0 * arc / RING_SIZE), state.getOwnedWords(), state.getStoreWords(),
+                    state.getStoreBytes()));
+            ownedWords += state.getOwnedWords();
+            wrongFingers += wrong;
+        }
+
+        sb.append("\nChord Ring Diagram:\n");
+        for (NodeState state : states) {
+            sb.append(state.getUrl()).append(" (").append(state.getId()).append(") -> ");
+        }
+        if (!states.isEmpty()) {
+            sb.append(states.get(0).getUrl()).append(" (").append(states.get(0).getId()).append(")\n");
+        }
+
+        long overlap = ownershipOverlap();
+        sb.append(String.format("%nWrong successors: %d, wrong predecessors: %d, wrong fingers: %d of %d%n",
+                wrongSuccessors(), wrongPredecessors(), wrongFingers, states.size() * NodeImpl.NUM_FINGERS));
+        sb.append("Key ownership: ").append(overlap == 0 ? "every key has exactly one owner"
+                : overlap > 0 ? overlap + " keys claimed by more than one node" : -overlap + " keys owned by no node").append('\n');
+        sb.append("Words held by their owners: ").append(ownedWords).append('\n');
+        return sb.toString();
+    }
+
+    public void writeReport(String fileName) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write(report());
+        }
+    }
+}
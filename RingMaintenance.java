@@ -0,0 +1,158 @@
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/* Runs Chord's stabilize, fix_fingers and check_predecessor, plus neighbour heartbeats, for one node on a
+   single scheduler thread. Heartbeats keep their interval so failure detection time stays bounded.
+   Every other task starts at its configured interval and doubles it, up to maxBackoffMillis, after every quiet round:
+   one run for stabilize and check_predecessor, a pass over the whole table for fix_fingers, which fixes one
+   finger per run. Any change, found here or reported by a notify, puts every task back on its base interval. */
+
+public class RingMaintenance {
+    private interface Step {
+        boolean run() throws RemoteException;
+    }
+
+    private static class Task {
+        final Step step;
+        final long baseMillis;
+        final int runsPerRound;
+        long delayMillis;
+        long runs;
+        int quietRuns;
+        ScheduledFuture<?> next;
+
+        Task(Step step, long baseMillis, int runsPerRound) {
+            this.step = step;
+            this.baseMillis = baseMillis;
+            this.runsPerRound = runsPerRound;
+            this.delayMillis = baseMillis;
+        }
+    }
+
+    private final NodeLogger nodeLogger;
+    private final ScheduledExecutorService scheduler;
+    private final long maxBackoffMillis;
+    private final Task stabilize;
+    private final Task fixFingers;
+    private final Task checkPredecessor;
+    private final Task heartbeat;
+    private final List<Task> tasks;
+    private volatile MaintenanceStats stats = new MaintenanceStats(0, 0, 0, 0, false, -1, 0, 0);
+
+    // Only touched on the scheduler thread
+    private long changes;
+    private boolean converged;
+    private Task running;
+    private long settlingSince;
+    private long lastChange;
+    private long lastConvergenceMillis = -1;
+
+    public RingMaintenance(NodeImpl node, int nodeId, NodeLogger nodeLogger, long stabilizeMillis, long fixFingersMillis,
+                           long checkPredecessorMillis, long heartbeatMillis, long maxBackoffMillis) {
+        this.nodeLogger = nodeLogger;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.stabilize = new Task(node::stabilize, stabilizeMillis, 1);
+        this.fixFingers = new Task(node::fixNextFinger, fixFingersMillis, NodeImpl.NUM_FINGERS);
+        this.checkPredecessor = new Task(node::checkPredecessor, checkPredecessorMillis, 1);
+        this.heartbeat = new Task(node::heartbeat, heartbeatMillis, Integer.MAX_VALUE);  // A round that never ends, so no backoff
+        this.tasks = Arrays.asList(stabilize, fixFingers, checkPredecessor, heartbeat);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ring-maintenance-" + nodeId);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Called once the node has joined; the time until the ring stops changing around it is its convergence time
+    public void start() {
+        scheduler.execute(() -> {
+            settlingSince = System.nanoTime();
+            lastChange = settlingSince;
+            for (Task task : tasks) {
+                schedule(task);
+            }
+        });
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    // A pointer of the node changed outside the maintenance tasks, e.g. a notify from a new predecessor
+    public void pointersChanged() {
+        try {
+            scheduler.execute(this::changed);
+        } catch (RejectedExecutionException e) {
+            // Stopped
+        }
+    }
+
+    public MaintenanceStats getStats() {
+        return stats;
+    }
+
+    private void schedule(Task task) {
+        task.next = scheduler.schedule(() -> run(task), task.delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(Task task) {
+        boolean changed;
+        running = task;
+        try {
+            changed = task.step.run();
+        } catch (RemoteException | RuntimeException e) {
+            nodeLogger.logWarning("Ring maintenance step failed: " + e.getMessage());
+            changed = true;  // Try again soon rather than backing off from a broken neighbour
+        }
+        task.runs++;
+        if (changed) {
+            changed();
+        } else {
+            task.quietRuns++;
+            if (task.quietRuns % task.runsPerRound == 0) {
+                task.delayMillis = Math.min(task.delayMillis * 2, Math.max(maxBackoffMillis, task.baseMillis));
+            }
+            if (!converged && fixFingers.quietRuns >= fixFingers.runsPerRound && stabilize.quietRuns > 0) {
+                converged = true;
+                lastConvergenceMillis = (lastChange - settlingSince) / 1_000_000;
+                nodeLogger.logInfo("Ring converged around this node " + lastConvergenceMillis + " ms after it started changing");
+            }
+        }
+        running = null;
+        if (!scheduler.isShutdown()) {
+            schedule(task);
+        }
+        publish();
+    }
+
+    private void changed() {
+        long now = System.nanoTime();
+        if (converged) {
+            converged = false;
+            settlingSince = now;
+        }
+        lastChange = now;
+        changes++;
+        for (Task task : tasks) {
+            task.quietRuns = 0;
+            if (task.delayMillis > task.baseMillis) {
+                task.delayMillis = task.baseMillis;
+                if (task != running && task.next != null && task.next.cancel(false)) {
+                    schedule(task);  // Do not sit out a long backed-off delay
+                }
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        stats = new MaintenanceStats(stabilize.runs, fixFingers.runs, checkPredecessor.runs, changes, converged,
+                lastConvergenceMillis, stabilize.delayMillis, fixFingers.delayMillis);
+    }
+}
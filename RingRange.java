@@ -0,0 +1,12 @@
+// Identifier-space arithmetic shared by nodes and shard stores
+public class RingRange {
+
+    // (start, end] on the ring; start == end covers the whole ring
+    public static boolean contains(int keyHash, int start, int end) {
+        if (start < end) {
+            return start < keyHash && keyHash <= end;
+        } else {
+            return start < keyHash || keyHash <= end;
+        }
+    }
+}
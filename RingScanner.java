@@ -0,0 +1,112 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/* Streams every word in the ring, or every word starting with a prefix, in ring order. Each node is asked
+   for the range it owns, (predecessor, id], one page at a time, so no node sends more than a page per call
+   and replicas are never returned twice. Up to --parallelism nodes are scanned at once: the node being
+   delivered has its next page in flight, and the nodes after it have their first page ready, so memory on
+   the client is bounded by parallelism pages. Membership comes from a RingInspector snapshot taken first,
+   so a node that joins during the scan is not asked, and words it has already pulled from its successor
+   are missed. */
+
+public class RingScanner {
+    private final RingInspector ring;
+    private long pages;
+
+    private static class Cursor {
+        final Node node;
+        final String url;
+        final int end;
+        CompletableFuture<ScanPage> pending;
+
+        Cursor(Node node, String url, int end) {
+            this.node = node;
+            this.url = url;
+            this.end = end;
+        }
+    }
+
+    public RingScanner(Node entry) throws RemoteException {
+        this.ring = RingInspector.inspect(entry);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java RingScanner <nodeURL> [--prefix=<prefix>] [--page-size=1000] [--parallelism=8] [--output=<file>]");
+            return;
+        }
+        NodeConfig config = NodeConfig.parse(args, 1);
+        String output = config.get("output", null);
+        long start = System.nanoTime();
+        RingScanner scanner = new RingScanner(Transports.lookup(args[0]));
+        long words;
+        try (Writer out = new BufferedWriter(output == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8) : new FileWriter(output, StandardCharsets.UTF_8))) {
+            // Same format as the dictionary file, so an export can be loaded again with DictionaryLoader
+            words = scanner.scan(config.get("prefix", null), config.getInt("page-size", 1000), config.getInt("parallelism", 8),
+                    (word, keyHash, definition, version) -> {
+                        try {
+                            out.write(word + " : " + (definition == null ? "" : definition) + "\n");
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        }
+        System.err.printf("Scanned %d words from %d nodes in %d pages, %.1f ms%n", words, scanner.ring.getStates().size(),
+                scanner.pages, (System.nanoTime() - start) / 1e6);
+        System.exit(0);
+    }
+
+    // Hands every matching word to visitor in ring order; returns how many
+    public long scan(String prefix, int pageSize, int parallelism, ShardStore.EntryVisitor visitor) throws RemoteException {
+        List<NodeState> states = ring.getStates();
+        int n = states.size();
+        Cursor[] cursors = new Cursor[n];
+        int started = 0;
+        long words = 0;
+        for (int head = 0; head < n; head++) {
+            while (started < n && started < head + Math.max(1, parallelism)) {
+                NodeState state = states.get(started);
+                int after = states.get((started - 1 + n) % n).getId();  // A single node owns (id, id], the whole ring
+                Cursor cursor = new Cursor(ring.getNode(state), state.getUrl(), state.getId());
+                cursor.pending = AsyncNode.of(cursor.node).scanRange(after, cursor.end, prefix, pageSize);
+                cursors[started++] = cursor;
+            }
+            Cursor cursor = cursors[head];
+            cursors[head] = null;
+            while (true) {
+                ScanPage page = await(cursor);
+                pages++;
+                if (!page.isDone()) {
+                    cursor.pending = AsyncNode.of(cursor.node).scanRange(page.getNext(), cursor.end, prefix, pageSize);
+                }
+                HashedEntries entries = page.getEntries();
+                for (int i = 0; i < entries.size(); i++) {
+                    visitor.accept(entries.word(i), entries.hash(i), entries.definition(i), entries.version(i));
+                }
+                words += entries.size();
+                if (page.isDone()) {
+                    break;
+                }
+            }
+        }
+        return words;
+    }
+
+    private static ScanPage await(Cursor cursor) throws RemoteException {
+        try {
+            return cursor.pending.join();
+        } catch (CompletionException e) {
+            throw new RemoteException("Scan of " + cursor.url + " failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+
+public class RmiTransport implements NodeTransport {
+    private final Registry registry;
+
+    public RmiTransport(String host, int registryPort) throws IOException {
+        this.registry = LocateRegistry.getRegistry(host, registryPort);
+    }
+
+    public RmiTransport(Registry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void export(NodeImpl node) throws IOException {
+        registry.rebind(node.getURL(), node);  // NodeImpl is already exported as a UnicastRemoteObject
+    }
+
+    @Override
+    public Node lookup(String url) throws IOException {
+        try {
+            return (Node) registry.lookup(url.substring(url.lastIndexOf('/') + 1));
+        } catch (NotBoundException e) {
+            throw new IOException("No node bound as " + url, e);
+        }
+    }
+
+    @Override
+    public String nodeURL(int id, int port) {
+        return "Node" + id;
+    }
+
+    @Override
+    public String virtualNodeURL(int id, int port, int index) {
+        return index == 0 ? nodeURL(id, port) : nodeURL(id, port) + "-v" + index;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,33 @@
+import java.io.Serializable;
+
+// Self-contained answer to "next hop for key K": the next node to contact and whether it owns K
+public class RouteHop implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final NodeRef next;
+    private final boolean owner;
+
+    public RouteHop(NodeRef next, boolean owner) {
+        this.next = next;
+        this.owner = owner;
+    }
+
+    public NodeRef getNext() {
+        return next;
+    }
+
+    public Node getNode() {
+        return next.getNode();
+    }
+
+    public int getId() {
+        return next.getId();
+    }
+
+    public String getUrl() {
+        return next.getUrl();
+    }
+
+    public boolean isOwner() {
+        return owner;
+    }
+}
@@ -0,0 +1,73 @@
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/* Starts an in-process ring of N nodes talking over RMI and compares routing cost per lookup */
+
+public class RoutingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java RoutingBenchmark <nodes> <lookups> [registryPort]");
+            return;
+        }
+        int nodes = Integer.parseInt(args[0]);
+        int lookups = Integer.parseInt(args[1]);
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 1099;
+
+        LocateRegistry.createRegistry(port);
+        Registry registry = LocateRegistry.getRegistry(port);  // A stub, so nodes get each other's stubs and calls are real RPCs
+        List<NodeImpl> ring = new ArrayList<>();
+        int[] ids = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            String url = "Node" + i;
+            ids[i] = FNV1aHash.hash32(url);  // Spread node ids over the ring instead of 0..N-1
+            NodeImpl node = new NodeImpl(ids[i], url);
+            registry.rebind(url, node);
+            node.join(i == 0 ? null : (Node) registry.lookup("Node0"));
+            ring.add(node);
+        }
+        Arrays.sort(ids);
+        System.out.println("Ring of " + nodes + " nodes is up.");
+
+        for (RoutingMode mode : RoutingMode.values()) {
+            RoutingStats before = totalStats(ring);
+            Random random = new Random(42);
+            int wrong = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                NodeImpl origin = ring.get(random.nextInt(nodes));
+                origin.setRoutingMode(mode);
+                int key = FNV1aHash.hash32("word-" + random.nextInt());
+                if (origin.findSuccessor(key).getID() != expectedOwner(ids, key)) {
+                    wrong++;
+                }
+            }
+            long elapsedMicros = (System.nanoTime() - start) / 1000;
+            RoutingStats stats = totalStats(ring).minus(before);
+            System.out.printf("%-9s nodes=%d %s avgLatency=%dus misrouted=%d%n",
+                    mode, nodes, stats, elapsedMicros / Math.max(1, lookups), wrong);
+        }
+        System.exit(0);
+    }
+
+    private static RoutingStats totalStats(List<NodeImpl> ring) throws Exception {
+        RoutingStats total = new RoutingStats(0, 0, 0);
+        for (NodeImpl node : ring) {
+            total = total.plus(node.getRoutingStats());
+        }
+        return total;
+    }
+
+    private static int expectedOwner(int[] sortedIds, int key) {
+        int idx = Arrays.binarySearch(sortedIds, key);
+        if (idx >= 0) {
+            return sortedIds[idx];
+        }
+        int insertion = -idx - 1;
+        return sortedIds[insertion == sortedIds.length ? 0 : insertion];
+    }
+}
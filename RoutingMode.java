@@ -0,0 +1,6 @@
+public enum RoutingMode {
+    // One nextHop() RPC per hop, the reply carries id/url/owner of the next node
+    ITERATIVE,
+    // Textbook find_predecessor walk: getID(), successor(), successor().getID(), closestPrecedingFinger() per hop
+    CLASSIC
+}
@@ -0,0 +1,48 @@
+import java.io.Serializable;
+
+// Snapshot of the routing counters of a node: lookups routed, hops taken and remote calls issued
+public class RoutingStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final long lookups;
+    private final long hops;
+    private final long rpcs;
+
+    public RoutingStats(long lookups, long hops, long rpcs) {
+        this.lookups = lookups;
+        this.hops = hops;
+        this.rpcs = rpcs;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getHops() {
+        return hops;
+    }
+
+    public long getRpcs() {
+        return rpcs;
+    }
+
+    public double averageHops() {
+        return lookups == 0 ? 0.0 : (double) hops / lookups;
+    }
+
+    public double averageRpcs() {
+        return lookups == 0 ? 0.0 : (double) rpcs / lookups;
+    }
+
+    public RoutingStats plus(RoutingStats other) {
+        return new RoutingStats(lookups + other.lookups, hops + other.hops, rpcs + other.rpcs);
+    }
+
+    public RoutingStats minus(RoutingStats other) {
+        return new RoutingStats(lookups - other.lookups, hops - other.hops, rpcs - other.rpcs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lookups=%d avgHops=%.2f avgRpcs=%.2f", lookups, averageHops(), averageRpcs());
+    }
+}
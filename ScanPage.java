@@ -0,0 +1,27 @@
+import java.io.Serializable;
+
+// One page of a range scan: the entries found, in ring order, and where the next page starts
+public class ScanPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final HashedEntries entries;
+    private final int next;  // Last hash covered; the next page scans (next, end]
+    private final boolean done;
+
+    public ScanPage(HashedEntries entries, int next, boolean done) {
+        this.entries = entries;
+        this.next = next;
+        this.done = done;
+    }
+
+    public HashedEntries getEntries() {
+        return entries;
+    }
+
+    public int getNext() {
+        return next;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Storage backend for the words a node owns. keyHash is FNV1aHash.hash32(word), computed once by the caller.
+// The whileLocked callbacks run while the entry is locked, so anything logged there is ordered like the store.
+// Every entry carries the version its owner gave it (see VersionClock); the store keeps it, it never makes one up.
+public interface ShardStore {
+    public interface EntryVisitor {
+        void accept(String word, int keyHash, String definition, long version);
+    }
+
+    public String get(String word, int keyHash);
+
+    // VersionedValue.ABSENT if the word is not stored
+    public VersionedValue getVersioned(String word, int keyHash);
+
+    // A null definition removes the word; whileLocked still runs if it was not stored
+    public void put(String word, int keyHash, String definition, long version, Runnable whileLocked);
+
+    public boolean remove(String word, int keyHash, Runnable whileLocked);
+
+    // Does nothing and returns false for a null definition
+    public boolean putIfAbsent(String word, int keyHash, String definition, long version, Runnable whileLocked);
+
+    // Writes definition with version only if the word's current version is expectedVersion (0: only if absent);
+    // a null definition removes the word instead. Check and write happen under the entry's lock.
+    public boolean compareAndSet(String word, int keyHash, long expectedVersion, String definition, long version, Runnable whileLocked);
+
+    // Removes every word whose hash is in (start, end], handing each one to whileLocked; returns how many
+    public int removeRange(int start, int end, Consumer<String> whileLocked);
+
+    public int size();
+
+    // Bytes of the live words and definitions as stored: UTF-8 words, definitions encoded with the store's ValueCodec
+    public long bytes();
+
+    public void forEach(BiConsumer<String, String> action);
+
+    // Visits every word whose hash is in (start, end], with the hash the store already holds for it
+    public void forEachInRange(int start, int end, EntryVisitor action);
+
+    // Visits the words in (start, end] in ring order from start, stopping at the first hash after which limit words
+    // have been visited; words sharing a hash are never split. Returns the last hash visited, or end once the range is done.
+    public int scanRange(int start, int end, int limit, EntryVisitor action);
+}
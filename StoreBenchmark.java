@@ -0,0 +1,89 @@
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+/* Fills one shard store with short words and definitions and reports heap, direct memory, resident set size
+   and GC pauses. Run each backend in its own JVM (e.g. with -Xmx8g) so the numbers do not mix. */
+
+public class StoreBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java StoreBenchmark <map|offheap> <entries>");
+            return;
+        }
+        ShardStore store = args[0].equals("offheap") ? new OffHeapShardStore() : new MapShardStore();
+        int entries = Integer.parseInt(args[1]);
+
+        long[] gcBefore = gcTotals();
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            String word = "w" + Integer.toString(i, 36);
+            store.put(word, FNV1aHash.hash32(word), "definition " + i, 1, null);
+        }
+        double fillSeconds = (System.nanoTime() - start) / 1e9;
+        long[] gcAfterFill = gcTotals();
+
+        Random random = new Random(7);
+        start = System.nanoTime();
+        int lookups = Math.min(entries, 1_000_000);
+        int misses = 0;
+        for (int i = 0; i < lookups; i++) {
+            String word = "w" + Integer.toString(random.nextInt(entries), 36);
+            if (store.get(word, FNV1aHash.hash32(word)) == null) {
+                misses++;
+            }
+        }
+        double lookupSeconds = (System.nanoTime() - start) / 1e9;
+
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        double fullGcMillis = (System.nanoTime() - fullGcStart) / 1e6;
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.printf("%s store, %d entries (%d payload bytes)%n", args[0], store.size(), store.bytes());
+        System.out.printf("  fill: %.0f puts/sec, GC during fill: %d collections, %d ms%n",
+                entries / fillSeconds, gcAfterFill[0] - gcBefore[0], gcAfterFill[1] - gcBefore[1]);
+        System.out.printf("  lookups: %.0f gets/sec, %d misses%n", lookups / lookupSeconds, misses);
+        System.out.printf("  full GC after fill: %.1f ms, heap used after it: %.1f MB (%.1f bytes/entry)%n",
+                fullGcMillis, heapUsed / 1e6, (double) heapUsed / entries);
+        System.out.printf("  direct memory: %.1f MB, resident set: %s%n", directBytes() / 1e6, residentSetSize());
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+            millis += gc.getCollectionTime();
+        }
+        return new long[]{count, millis};
+    }
+
+    private static long directBytes() {
+        List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        for (BufferPoolMXBean pool : pools) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static String residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return line.substring(6).trim();
+                }
+            }
+        } catch (Exception e) {
+            // Not on Linux
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,101 @@
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Starts an in-process ring on the chosen transport and drives a 90/10 lookup/insert mix through it,
+   reporting ops/sec and latency percentiles so RMI and NIO can be compared on the same ring. */
+
+public class TransportBenchmark {
+    private static final int WORDS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: java TransportBenchmark <rmi|nio> <nodes> <threads> <seconds> [basePort]");
+            return;
+        }
+        String transportName = args[0];
+        int nodes = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        int seconds = Integer.parseInt(args[3]);
+        int basePort = args.length > 4 ? Integer.parseInt(args[4]) : 5000;
+
+        NodeTransport transport = transportName.equals("rmi")
+                ? rmiTransport(basePort)
+                : NioTransport.shared();
+        List<Node> entryPoints = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            String url = transport.nodeURL(i, basePort + 1 + i);
+            NodeImpl node = new NodeImpl(FNV1aHash.hash32("Node" + i), url);
+            transport.export(node);
+            node.join(i == 0 ? null : transport.lookup(transport.nodeURL(0, basePort + 1)));
+            entryPoints.add(transport.lookup(url));  // Callers always go through the transport
+        }
+
+        Map<String, String> words = new LinkedHashMap<>();
+        for (int i = 0; i < WORDS; i++) {
+            words.put("word" + i, "definition of word " + i);
+        }
+        entryPoints.get(0).insertAll(words);
+        System.out.println("Ring of " + nodes + " nodes over " + transportName + " loaded with " + WORDS + " words.");
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong operations = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] samples = new long[1 << 20];
+            latencies.add(samples);
+            final int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                int count = 0;
+                try {
+                    while (System.nanoTime() < deadline) {
+                        Node node = entryPoints.get(random.nextInt(nodes));
+                        String word = "word" + random.nextInt(WORDS);
+                        long start = System.nanoTime();
+                        if (random.nextInt(10) == 0) {
+                            node.insert(word, "updated definition of " + word);
+                        } else {
+                            node.lookup(word);
+                        }
+                        samples[count++ & (samples.length - 1)] = System.nanoTime() - start;
+                    }
+                } catch (Exception e) {
+                    System.err.println("Worker failed: " + e);
+                }
+                operations.addAndGet(count);
+                samples[samples.length - 1] = Math.min(count, samples.length - 1);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long total = operations.get();
+        long[] all = latencies.stream()
+                .flatMapToLong(s -> Arrays.stream(s, 0, (int) s[s.length - 1]))
+                .sorted().toArray();
+        System.out.printf("%s: %d ops in %ds = %.0f ops/sec, latency p50=%.1fus p99=%.1fus p999=%.1fus%n",
+                transportName, total, seconds, total / (double) seconds,
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3, percentile(all, 0.999) / 1e3);
+        System.exit(0);
+    }
+
+    // Go through a registry stub: the object returned by createRegistry would hand back the NodeImpl itself
+    private static NodeTransport rmiTransport(int port) throws Exception {
+        LocateRegistry.createRegistry(port);
+        return new RmiTransport("localhost", port);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+}
@@ -0,0 +1,36 @@
+import java.io.IOException;
+import java.rmi.Naming;
+
+public class Transports {
+
+    // nio://host:port goes through the NIO transport, anything else is an RMI URL or registry name
+    public static Node lookup(String url) throws IOException {
+        if (url.startsWith(NioTransport.SCHEME)) {
+            return NioTransport.shared().lookup(url);
+        }
+        try {
+            return (Node) Naming.lookup(url);
+        } catch (Exception e) {
+            throw new IOException("Unable to look up " + url + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Bounds how long connecting to or calling an unresponsive node can block, on both transports.
+    // The RMI properties are read once, so call this before the first RMI call.
+    public static void setCallTimeout(long millis) {
+        System.setProperty("sun.rmi.transport.tcp.responseTimeout", Long.toString(millis));
+        System.setProperty("sun.rmi.transport.proxy.connectTimeout", Long.toString(millis));
+        NioConnection.setCallTimeout(millis);
+    }
+
+    public static NodeTransport create(String name, int registryPort) throws IOException {
+        switch (name) {
+            case "rmi":
+                return new RmiTransport("localhost", registryPort);
+            case "nio":
+                return NioTransport.shared();
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/* Compact encoding for definitions, for short English text where general-purpose compressors gain little:
+   a definition is a few dozen bytes, too short for Deflate to find repeats even with a preset dictionary.
+   Instead a codebook of up to 127 common fragments ("tion", " of ", "the ") is trained from sample
+   definitions, and each fragment is written as one byte. Encoded bytes:
+     0x00-0x7f  the ASCII byte itself
+     0x80-0xfe  codebook entry (b - 0x80)
+     0xff n     n raw bytes follow, for runs of non-ASCII UTF-8
+   so ASCII text never grows and needs no flag. PLAIN has no codebook and is the UTF-8 bytes unchanged.
+   Both ends of a connection must hold the same codebook; id() is its CRC-32, which the NIO transport compares
+   when a connection opens, falling back to PLAIN on a mismatch. On the wire a string is framed by a varint
+   length instead of an int. */
+
+public class ValueCodec {
+    public static final ValueCodec PLAIN = new ValueCodec(new byte[0][]);
+    private static final int MAX_ENTRIES = 127;
+    private static final int MIN_FRAGMENT = 2;
+    private static final int MAX_FRAGMENT = 8;
+    private static final int MAX_TRAINING_BYTES = 1 << 20;  // Training cost grows with the sample, not the result
+    private static final int RAW_RUN = 0xff;
+
+    private final byte[][] entries;
+    private final int[][] byFirstByte;  // Codes of the entries starting with each byte, longest first
+    private final int id;
+
+    private ValueCodec(byte[][] entries) {
+        this.entries = entries;
+        this.byFirstByte = new int[128][];
+        for (int b = 0; b < 128; b++) {
+            List<Integer> codes = new ArrayList<>();
+            for (int code = 0; code < entries.length; code++) {
+                if (entries[code][0] == b) {
+                    codes.add(code);
+                }
+            }
+            codes.sort((x, y) -> entries[y].length - entries[x].length);
+            byFirstByte[b] = codes.stream().mapToInt(Integer::intValue).toArray();
+        }
+        CRC32 crc = new CRC32();
+        for (byte[] entry : entries) {
+            crc.update(entry.length);
+            crc.update(entry);
+        }
+        this.id = entries.length == 0 ? 0 : (int) crc.getValue() | 1;
+    }
+
+    // Codebook trained from the definitions of a "word : definition" dictionary file
+    public static ValueCodec fromDictionaryFile(Path file) throws IOException {
+        List<String> definitions = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                definitions.add(line.substring(colon + 1).trim());
+            }
+        }
+        return train(definitions);
+    }
+
+    // Greedy: repeatedly takes the ASCII fragment that saves the most bytes over the sample, then blanks its
+    // occurrences so overlapping fragments are not counted twice. Deterministic, so equal samples give equal ids.
+    public static ValueCodec train(Collection<String> samples) {
+        List<byte[]> texts = new ArrayList<>();
+        int total = 0;
+        for (String sample : samples) {
+            byte[] text = sample.getBytes(StandardCharsets.UTF_8);
+            if (total + text.length > MAX_TRAINING_BYTES) {
+                break;
+            }
+            texts.add(text);
+            total += text.length;
+        }
+        List<byte[]> chosen = new ArrayList<>();
+        while (chosen.size() < MAX_ENTRIES) {
+            Map<String, Integer> counts = new HashMap<>();
+            for (byte[] text : texts) {
+                for (int start = 0; start < text.length; start++) {
+                    if (text[start] <= 0) {
+                        continue;
+                    }
+                    for (int length = MIN_FRAGMENT; length <= MAX_FRAGMENT && start + length <= text.length; length++) {
+                        byte last = text[start + length - 1];
+                        if (last <= 0) {
+                            break;  // Blanked or non-ASCII
+                        }
+                        counts.merge(new String(text, start, length, StandardCharsets.ISO_8859_1), 1, Integer::sum);
+                    }
+                }
+            }
+            String best = null;
+            long bestSaving = 0;
+            for (Map.Entry<String, Integer> candidate : counts.entrySet()) {
+                long saving = (long) candidate.getValue() * (candidate.getKey().length() - 1);
+                if (saving > bestSaving || (saving == bestSaving && best != null && candidate.getKey().compareTo(best) < 0)) {
+                    best = candidate.getKey();
+                    bestSaving = saving;
+                }
+            }
+            if (best == null || bestSaving < 2) {
+                break;
+            }
+            byte[] fragment = best.getBytes(StandardCharsets.ISO_8859_1);
+            chosen.add(fragment);
+            for (byte[] text : texts) {
+                blank(text, fragment);
+            }
+        }
+        return new ValueCodec(chosen.toArray(new byte[0][]));
+    }
+
+    private static void blank(byte[] text, byte[] fragment) {
+        for (int i = 0; i + fragment.length <= text.length; i++) {
+            if (matches(text, i, fragment)) {
+                Arrays.fill(text, i, i + fragment.length, (byte) 0);
+                i += fragment.length - 1;
+            }
+        }
+    }
+
+    private static boolean matches(byte[] text, int offset, byte[] fragment) {
+        for (int i = 0; i < fragment.length; i++) {
+            if (text[offset + i] != fragment[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public byte[] encode(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        if (entries.length == 0) {
+            return utf8;
+        }
+        byte[] out = new byte[utf8.length * 2 + 2];  // Worst case: two-byte characters between single ASCII bytes
+        int n = 0;
+        int i = 0;
+        while (i < utf8.length) {
+            int b = utf8[i];
+            if (b < 0) {
+                int run = 1;
+                while (i + run < utf8.length && utf8[i + run] < 0 && run < 255) {
+                    run++;
+                }
+                out[n++] = (byte) RAW_RUN;
+                out[n++] = (byte) run;
+                System.arraycopy(utf8, i, out, n, run);
+                n += run;
+                i += run;
+                continue;
+            }
+            int code = longestMatch(utf8, i);
+            if (code >= 0) {
+                out[n++] = (byte) (0x80 + code);
+                i += entries[code].length;
+            } else {
+                out[n++] = (byte) b;
+                i++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private int longestMatch(byte[] text, int offset) {
+        for (int code : byFirstByte[text[offset]]) {
+            byte[] entry = entries[code];
+            if (offset + entry.length <= text.length && matches(text, offset, entry)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    public String decode(byte[] encoded, int offset, int length) {
+        if (entries.length == 0) {
+            return new String(encoded, offset, length, StandardCharsets.UTF_8);
+        }
+        int end = offset + length;
+        int size = 0;
+        for (int i = offset; i < end; ) {  // Sizes first, so the text is built in one exact array
+            int b = encoded[i] & 0xff;
+            if (b < 0x80) {
+                size++;
+                i++;
+            } else if (b == RAW_RUN) {
+                size += encoded[i + 1] & 0xff;
+                i += 2 + (encoded[i + 1] & 0xff);
+            } else {
+                size += entries[b - 0x80].length;
+                i++;
+            }
+        }
+        byte[] utf8 = new byte[size];
+        int n = 0;
+        for (int i = offset; i < end; ) {
+            int b = encoded[i] & 0xff;
+            if (b < 0x80) {
+                utf8[n++] = (byte) b;
+                i++;
+            } else if (b == RAW_RUN) {
+                int run = encoded[i + 1] & 0xff;
+                System.arraycopy(encoded, i + 2, utf8, n, run);
+                n += run;
+                i += 2 + run;
+            } else {
+                byte[] entry = entries[b - 0x80];
+                System.arraycopy(entry, 0, utf8, n, entry.length);
+                n += entry.length;
+                i++;
+            }
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    public String decode(byte[] encoded) {
+        return decode(encoded, 0, encoded.length);
+    }
+
+    // Wire framing: [varint length + 1][encoded bytes], with 0 for null
+    public void writeNullable(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+            return;
+        }
+        byte[] encoded = encode(value);
+        writeVarint(out, encoded.length + 1);
+        out.write(encoded);
+    }
+
+    public String readNullable(DataInputStream in) throws IOException {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        in.readFully(encoded);
+        return decode(encoded);
+    }
+
+    public static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
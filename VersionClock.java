@@ -0,0 +1,21 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/* Source of entry versions: microseconds since the epoch, but always past every version this node issued or
+   stored, like a hybrid logical clock. A word that is removed and written again, or that moves to another
+   node, so gets a version it never had before, and a compare-and-set against an old version cannot match. */
+
+public class VersionClock {
+    private final AtomicLong last = new AtomicLong();
+
+    public long next() {
+        long now = System.currentTimeMillis() * 1000;
+        return last.updateAndGet(previous -> Math.max(previous + 1, now));
+    }
+
+    // Versions written by other nodes, through replication or transfers, move the clock past them
+    public void observe(long version) {
+        if (version > last.get()) {
+            last.accumulateAndGet(version, Math::max);
+        }
+    }
+}
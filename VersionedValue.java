@@ -0,0 +1,31 @@
+import java.io.Serializable;
+
+// A definition with the version its owner gave it; version 0 and a null definition mean the word is absent
+public class VersionedValue implements Serializable {
+    private static final long serialVersionUID = 1L;
+    public static final VersionedValue ABSENT = new VersionedValue(null, 0);
+    private final String definition;
+    private final long version;
+
+    public VersionedValue(String definition, long version) {
+        this.definition = definition;
+        this.version = version;
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isAbsent() {
+        return version == 0;
+    }
+
+    @Override
+    public String toString() {
+        return isAbsent() ? "absent" : definition + " (v" + version + ")";
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/* One physical process holding several ring positions (virtual nodes). Each virtual node is a NodeImpl with
+   its own id, fingers and key range; all of them share the host's ShardStore, write-ahead log and transport.
+   Positions are FNV-1a hashes of the host URL and the virtual node index rather than the id given to Main,
+   and a host of weight w runs w times the base number of virtual nodes, so it gets about w times the keys. */
+
+public class VirtualHost {
+    private final String url;
+    private final List<NodeImpl> nodes;
+
+    public VirtualHost(NodeTransport transport, int hostId, int port, int virtualNodes, ShardStore store) throws RemoteException {
+        this.url = transport.nodeURL(hostId, port);
+        List<NodeImpl> created = new ArrayList<>(virtualNodes);
+        for (int i = 0; i < virtualNodes; i++) {
+            String nodeURL = transport.virtualNodeURL(hostId, port, i);
+            created.add(new NodeImpl(positionOf(url, i), nodeURL, store));
+        }
+        this.nodes = Collections.unmodifiableList(created);
+    }
+
+    public static int virtualNodeCount(int perUnitWeight, double weight) {
+        return Math.max(1, (int) Math.round(perUnitWeight * weight));
+    }
+
+    // FNV-1a of strings that differ only in their last characters lands in clumps, so the hash goes through
+    // MurmurHash3's finalizer before it becomes a position
+    public static int positionOf(String hostURL, int index) {
+        int h = FNV1aHash.hash32(hostURL + "#" + index);
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & Integer.MAX_VALUE;  // Ids live in [0, 2^31) like key hashes
+    }
+
+    // The host part of a virtual node URL: Node3-v2 and nio://localhost:5003/v2 belong to Node3 and nio://localhost:5003
+    public static String hostOf(String nodeURL) {
+        int cut = Math.max(nodeURL.lastIndexOf("-v"), nodeURL.lastIndexOf("/v"));
+        if (cut < 0 || cut + 2 == nodeURL.length()) {
+            return nodeURL;
+        }
+        for (int i = cut + 2; i < nodeURL.length(); i++) {
+            if (!Character.isDigit(nodeURL.charAt(i))) {
+                return nodeURL;
+            }
+        }
+        return nodeURL.substring(0, cut);
+    }
+
+    public String getURL() {
+        return url;
+    }
+
+    public List<NodeImpl> getNodes() {
+        return nodes;
+    }
+
+    public void setReplication(int replicationFactor, ConsistencyLevel readConsistency, ConsistencyLevel writeConsistency) {
+        for (NodeImpl node : nodes) {
+            node.setReplication(replicationFactor, readConsistency, writeConsistency);
+        }
+    }
+
+    public void setReadCache(int maxEntries, long ttlMillis) {
+        for (NodeImpl node : nodes) {
+            node.setReadCache(maxEntries, ttlMillis);
+        }
+    }
+
+    public void setWritePipeline(int maxBatch, long maxDelayMicros) {
+        for (NodeImpl node : nodes) {
+            node.setWritePipeline(maxBatch, maxDelayMicros);
+        }
+    }
+
+    // The first virtual node recovers the shared store, the others only append to the log
+    public void attachLog(WriteAheadLog log) throws IOException {
+        nodes.get(0).attachLog(log);
+        for (NodeImpl node : nodes.subList(1, nodes.size())) {
+            node.shareLog(log);
+        }
+    }
+
+    public void export(NodeTransport transport) throws IOException {
+        for (NodeImpl node : nodes) {
+            transport.export(node);
+        }
+    }
+
+    // The first virtual node joins through bootstrapNode, or starts the ring if it is null; the rest join
+    // through it at once, since joins into different ranges do not wait for each other
+    public void join(Node bootstrapNode) throws RemoteException, InterruptedException {
+        NodeImpl first = nodes.get(0);
+        first.join(bootstrapNode);
+        List<CompletableFuture<Void>> joins = new ArrayList<>(nodes.size() - 1);
+        for (NodeImpl node : nodes.subList(1, nodes.size())) {
+            joins.add(CompletableFuture.runAsync(() -> {
+                try {
+                    node.join(first);
+                } catch (RemoteException | InterruptedException e) {
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(joins.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RemoteException ? (RemoteException) e.getCause() : new RemoteException("Virtual node join failed", e.getCause());
+        }
+    }
+
+    public void startMaintenance(long stabilizeMillis, long fixFingersMillis, long checkPredecessorMillis,
+                                 long heartbeatMillis, long maxBackoffMillis) {
+        for (NodeImpl node : nodes) {
+            node.startMaintenance(stabilizeMillis, fixFingersMillis, checkPredecessorMillis, heartbeatMillis, maxBackoffMillis);
+        }
+    }
+
+    // One at a time: a virtual node whose successor is a sibling hands over nothing, the sibling takes its range
+    // with its own and passes both on when it leaves in turn
+    public void leave() throws RemoteException {
+        for (NodeImpl node : nodes) {
+            node.leave();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.Arrays;
+
+/* Places hosts on the ring the way Main used to (ids 0..N-1 from the command line) and with growing numbers
+   of hashed virtual nodes, then hashes a set of words onto each ring and prints how far the hosts' word
+   shares stray from even. Pure arithmetic, no RPC: the same placement and hash the nodes use. */
+
+public class VirtualNodeBenchmark {
+    private static final int[] VIRTUAL_NODES = {1, 4, 16, 64, 128, 256};
+
+    public static void main(String[] args) {
+        int hosts = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int words = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int[] hashes = new int[words];
+        for (int i = 0; i < words; i++) {
+            hashes[i] = FNV1aHash.hash32("word-" + i);
+        }
+
+        System.out.printf("%d hosts, %d words%n", hosts, words);
+        System.out.printf("%-26s %-12s %-12s%n", "placement", "std dev", "max share");
+        double[] even = new double[hosts];
+        Arrays.fill(even, 1.0 / hosts);
+        int[] legacy = new int[hosts];
+        int[] legacyHost = new int[hosts];
+        for (int h = 0; h < hosts; h++) {
+            legacy[h] = h;
+            legacyHost[h] = h;
+        }
+        print("command-line ids 0..N-1", shares(legacy, legacyHost, hosts, hashes), even);
+
+        for (int v : VIRTUAL_NODES) {
+            print(v + " hashed vnode(s) per host", place(hosts, v, 1, hashes), even);
+        }
+
+        // Every other host twice as heavy: it should get twice the keys
+        int v = VIRTUAL_NODES[VIRTUAL_NODES.length - 2];
+        double[] weighted = new double[hosts];
+        for (int h = 0; h < hosts; h++) {
+            weighted[h] = (h % 2 == 0 ? 2.0 : 1.0) / (hosts / 2 * 3 + hosts % 2 * 2);
+        }
+        print(v + " vnodes, weights 2:1", place(hosts, v, 2, hashes), weighted);
+    }
+
+    private static double[] place(int hosts, int perUnitWeight, int heavyWeight, int[] hashes) {
+        int total = 0;
+        int[] counts = new int[hosts];
+        for (int h = 0; h < hosts; h++) {
+            counts[h] = VirtualHost.virtualNodeCount(perUnitWeight, h % 2 == 0 ? heavyWeight : 1);
+            total += counts[h];
+        }
+        int[] ids = new int[total];
+        int[] owners = new int[total];
+        int next = 0;
+        for (int h = 0; h < hosts; h++) {
+            for (int i = 0; i < counts[h]; i++) {
+                ids[next] = VirtualHost.positionOf("Node" + h, i);
+                owners[next++] = h;
+            }
+        }
+        return shares(ids, owners, hosts, hashes);
+    }
+
+    // A key belongs to the first node id at or after it, wrapping around
+    private static double[] shares(int[] ids, int[] owners, int hosts, int[] hashes) {
+        Integer[] order = new Integer[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(ids[a], ids[b]));
+        int[] sorted = new int[ids.length];
+        int[] sortedOwners = new int[ids.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = ids[order[i]];
+            sortedOwners[i] = owners[order[i]];
+        }
+        double[] shares = new double[hosts];
+        for (int hash : hashes) {
+            int index = Arrays.binarySearch(sorted, hash);
+            int at = index >= 0 ? index : -index - 1;
+            shares[sortedOwners[at == sorted.length ? 0 : at]] += 1.0 / hashes.length;
+        }
+        return shares;
+    }
+
+    private static void print(String placement, double[] shares, double[] expected) {
+        System.out.printf("%-26s %-12s %-12s%n", placement,
+                String.format("%.1f%%", 100 * KeyShareReport.relativeStdDev(shares, expected)),
+                String.format("%.2fx", KeyShareReport.maxRatio(shares, expected)));
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/* Write throughput of the write-ahead log with fsync per batch vs per record, and recovery time from the files
+   each run leaves behind. Writers follow NodeImpl: log while the store holds the entry, then wait until the record is durable. */
+
+public class WalBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: java WalBenchmark <dataDir> <entries> <threads> [snapshotEvery]");
+            return;
+        }
+        Path dataDir = Paths.get(args[0]);
+        int entries = Integer.parseInt(args[1]);
+        int threads = Integer.parseInt(args[2]);
+        long snapshotEvery = args.length > 3 ? Long.parseLong(args[3]) : entries / 2;
+
+        for (WriteAheadLog.SyncMode mode : WriteAheadLog.SyncMode.values()) {
+            Path directory = dataDir.resolve(mode.name().toLowerCase());
+            deleteRecursively(directory);
+
+            ShardStore shard = new MapShardStore();
+            WriteAheadLog log = new WriteAheadLog(directory, mode, snapshotEvery);
+            log.recover(shard);
+            long start = System.nanoTime();
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t;
+                Thread writer = new Thread(() -> {
+                    for (int i = offset; i < entries; i += threads) {
+                        String word = "word" + i;
+                        String definition = "definition of word number " + i;
+                        List<CompletableFuture<Void>> durable = new ArrayList<>(1);
+                        shard.put(word, FNV1aHash.hash32(word), definition, 1, () -> durable.add(log.appendPut(word, definition, 1)));
+                        durable.get(0).join();
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            log.close();
+
+            ShardStore recovered = new MapShardStore();
+            WriteAheadLog reopened = new WriteAheadLog(directory, mode, snapshotEvery);
+            long recoveryStart = System.nanoTime();
+            reopened.recover(recovered);
+            double recoveryMillis = (System.nanoTime() - recoveryStart) / 1e6;
+            reopened.close();
+
+            System.out.printf("fsync per %-5s %d writes by %d threads: %.0f writes/sec, recovered %d words in %.1f ms%n",
+                    mode, entries, threads, entries / seconds, recovered.size(), recoveryMillis);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
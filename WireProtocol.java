@@ -0,0 +1,327 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Binary encoding for the NIO transport.
+   Request frame:  [int length][long requestId][byte opcode][int virtual node][arguments]
+   Response frame: [int length][long requestId][byte status][result or error]
+   The opcode is the index of the Node method in a stable ordering, and values are encoded by their declared
+   type: primitives, strings, string collections and hashed keys are written directly, nodes travel as their URL, and
+   anything else falls back to Java serialization with nodes replaced by their URL. Strings are varint-framed and
+   encoded with the connection's ValueCodec, agreed by an OP_HELLO frame when the connection opens. */
+
+public class WireProtocol {
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+    public static final byte OP_HELLO = (byte) 0xff;  // Never a method index; argument and result are a codec id
+    private static final byte COMPACT = 0;
+    private static final byte SERIALIZED = 1;
+
+    private static final Method[] METHODS = Arrays.stream(Node.class.getMethods())
+            .sorted(Comparator.comparing(Method::toGenericString))
+            .toArray(Method[]::new);
+
+    public static byte opcode(Method method) {
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(method)) {
+                return (byte) i;
+            }
+        }
+        throw new IllegalArgumentException("Not a Node method: " + method);
+    }
+
+    public static Method method(byte opcode) {
+        return METHODS[opcode & 0xff];
+    }
+
+    public static byte[] encodeArguments(Method method, Object[] args, ValueCodec codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            writeValue(out, types[i], args[i], codec);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static Object[] decodeArguments(Method method, DataInputStream in, ValueCodec codec) throws IOException {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            args[i] = readValue(in, types[i], codec);
+        }
+        return args;
+    }
+
+    public static byte[] encodeResult(Method method, Object result, ValueCodec codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeValue(out, method.getReturnType(), result, codec);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static Object decodeResult(Method method, DataInputStream in, ValueCodec codec) throws IOException {
+        return readValue(in, method.getReturnType(), codec);
+    }
+
+    public static void writeValue(DataOutputStream out, Class<?> type, Object value, ValueCodec codec) throws IOException {
+        if (type == void.class) {
+            return;
+        } else if (type == int.class) {
+            out.writeInt((Integer) value);
+            return;
+        } else if (type == long.class) {
+            out.writeLong((Long) value);
+            return;
+        } else if (type == boolean.class) {
+            out.writeBoolean((Boolean) value);
+            return;
+        }
+        out.writeBoolean(value != null);
+        if (value == null) {
+            return;
+        }
+        if (type == String.class) {
+            codec.writeNullable(out, (String) value);
+        } else if (type == Node.class) {
+            codec.writeNullable(out, urlOf((Node) value));
+        } else if (type == NodeRef.class) {
+            writeNodeRef(out, (NodeRef) value, codec);
+        } else if (type == RouteHop.class) {
+            RouteHop hop = (RouteHop) value;
+            out.writeBoolean(hop.isOwner());
+            writeNodeRef(out, hop.getNext(), codec);
+        } else if (type == OwnedResult.class) {
+            OwnedResult result = (OwnedResult) value;
+            out.writeBoolean(result.isOwner());
+            codec.writeNullable(out, result.getDefinition());
+        } else if (type == HashedKey.class) {
+            HashedKey key = (HashedKey) value;
+            out.writeInt(key.getHash());
+            codec.writeNullable(out, key.getWord());
+        } else if (type == HashedEntries.class) {
+            writeEntries(out, (HashedEntries) value, codec);
+        } else if (type == ScanPage.class) {
+            ScanPage page = (ScanPage) value;
+            out.writeInt(page.getNext());
+            out.writeBoolean(page.isDone());
+            writeEntries(out, page.getEntries(), codec);
+        } else if (type == VersionedValue.class) {
+            writeVersioned(out, (VersionedValue) value, codec);
+        } else if (type == CasResult.class) {
+            CasResult result = (CasResult) value;
+            out.writeBoolean(result.isApplied());
+            writeVersioned(out, result.getCurrent(), codec);
+        } else if ((type == Map.class) && onlyStrings(((Map<?, ?>) value).keySet()) && onlyStrings(((Map<?, ?>) value).values())) {
+            out.writeByte(COMPACT);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                codec.writeNullable(out, (String) entry.getKey());
+                codec.writeNullable(out, (String) entry.getValue());
+            }
+        } else if ((type == List.class || type == Collection.class) && onlyStrings((Collection<?>) value)) {
+            out.writeByte(COMPACT);
+            out.writeInt(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                codec.writeNullable(out, (String) element);
+            }
+        } else {
+            if (type == Map.class || type == List.class || type == Collection.class) {
+                out.writeByte(SERIALIZED);
+            }
+            writeSerialized(out, value);
+        }
+    }
+
+    public static Object readValue(DataInputStream in, Class<?> type, ValueCodec codec) throws IOException {
+        if (type == void.class) {
+            return null;
+        } else if (type == int.class) {
+            return in.readInt();
+        } else if (type == long.class) {
+            return in.readLong();
+        } else if (type == boolean.class) {
+            return in.readBoolean();
+        }
+        if (!in.readBoolean()) {
+            return null;
+        }
+        if (type == String.class) {
+            return codec.readNullable(in);
+        } else if (type == Node.class) {
+            return NioTransport.shared().lookup(codec.readNullable(in));
+        } else if (type == NodeRef.class) {
+            return readNodeRef(in, codec);
+        } else if (type == RouteHop.class) {
+            boolean owner = in.readBoolean();
+            return new RouteHop(readNodeRef(in, codec), owner);
+        } else if (type == OwnedResult.class) {
+            boolean owner = in.readBoolean();
+            return new OwnedResult(owner, codec.readNullable(in));
+        } else if (type == HashedKey.class) {
+            int hash = in.readInt();
+            return new HashedKey(codec.readNullable(in), hash);
+        } else if (type == HashedEntries.class) {
+            return readEntries(in, codec);
+        } else if (type == ScanPage.class) {
+            int next = in.readInt();
+            boolean done = in.readBoolean();
+            return new ScanPage(readEntries(in, codec), next, done);
+        } else if (type == VersionedValue.class) {
+            return readVersioned(in, codec);
+        } else if (type == CasResult.class) {
+            boolean applied = in.readBoolean();
+            return new CasResult(applied, readVersioned(in, codec));
+        } else if (type == Map.class && in.readByte() == COMPACT) {
+            int size = in.readInt();
+            Map<String, String> map = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                map.put(codec.readNullable(in), codec.readNullable(in));
+            }
+            return map;
+        } else if ((type == List.class || type == Collection.class) && in.readByte() == COMPACT) {
+            int size = in.readInt();
+            List<String> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(codec.readNullable(in));
+            }
+            return list;
+        }
+        return readSerialized(in);
+    }
+
+    // Outside a connection's codec, as for error messages
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        ValueCodec.PLAIN.writeNullable(out, value);
+    }
+
+    public static String readString(DataInputStream in) throws IOException {
+        return ValueCodec.PLAIN.readNullable(in);
+    }
+
+    private static void writeNodeRef(DataOutputStream out, NodeRef ref, ValueCodec codec) throws IOException {
+        out.writeInt(ref.getId());
+        codec.writeNullable(out, ref.getUrl());
+    }
+
+    private static NodeRef readNodeRef(DataInputStream in, ValueCodec codec) throws IOException {
+        int id = in.readInt();
+        String url = codec.readNullable(in);
+        return new NodeRef(NioTransport.shared().lookup(url), id, url);
+    }
+
+    private static void writeEntries(DataOutputStream out, HashedEntries entries, ValueCodec codec) throws IOException {
+        out.writeInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            out.writeInt(entries.hash(i));
+            codec.writeNullable(out, entries.word(i));
+            codec.writeNullable(out, entries.definition(i));
+            out.writeLong(entries.version(i));
+        }
+    }
+
+    private static HashedEntries readEntries(DataInputStream in, ValueCodec codec) throws IOException {
+        int size = in.readInt();
+        HashedEntries entries = new HashedEntries(size);
+        for (int i = 0; i < size; i++) {
+            int hash = in.readInt();
+            String word = codec.readNullable(in);
+            String definition = codec.readNullable(in);
+            entries.add(word, hash, definition, in.readLong());
+        }
+        return entries;
+    }
+
+    private static void writeVersioned(DataOutputStream out, VersionedValue value, ValueCodec codec) throws IOException {
+        out.writeLong(value.getVersion());
+        codec.writeNullable(out, value.getDefinition());
+    }
+
+    private static VersionedValue readVersioned(DataInputStream in, ValueCodec codec) throws IOException {
+        long version = in.readLong();
+        return new VersionedValue(codec.readNullable(in), version);
+    }
+
+    private static boolean onlyStrings(Collection<?> values) {
+        for (Object value : values) {
+            if (value != null && !(value instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String urlOf(Node node) throws IOException {
+        return node.getURL();  // Local NodeImpl or NIO proxy, neither makes a remote call for this
+    }
+
+    private static void writeSerialized(DataOutputStream out, Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objects = new NodeReplacingOutput(bytes)) {
+            objects.writeObject(value);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Object readSerialized(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream objects = new NodeResolvingInput(new ByteArrayInputStream(bytes))) {
+            return objects.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Stand-in for a Node inside a Java-serialized value
+    private static class NodeHandle implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String url;
+
+        NodeHandle(String url) {
+            this.url = url;
+        }
+    }
+
+    private static class NodeReplacingOutput extends ObjectOutputStream {
+        NodeReplacingOutput(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            return obj instanceof Node ? new NodeHandle(urlOf((Node) obj)) : obj;
+        }
+    }
+
+    private static class NodeResolvingInput extends ObjectInputStream {
+        NodeResolvingInput(InputStream in) throws IOException {
+            super(in);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            return obj instanceof NodeHandle ? NioTransport.shared().lookup(((NodeHandle) obj).url) : obj;
+        }
+    }
+}
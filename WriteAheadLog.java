@@ -0,0 +1,394 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/* Durable shard storage: every setDictionary/remove is appended to a write-ahead log segment (wal-<seq>.log)
+   by a single writer thread that group-commits whatever has queued up, fsyncing once per batch or once per
+   record. Every snapshotEvery records the writer rolls to a new segment and a background thread writes the
+   whole shard to snapshot.dat; older segments are deleted once the snapshot is on disk. Recovery maps the
+   snapshot into memory and replays the segments written after it.
+
+   Segment record: [int length][int crc32][byte op][int wordLength][word][int definitionLength or -1][definition]
+                   and for versioned puts [long version] after the definition
+   Snapshot:       [int magic][long firstSegmentToReplay] then ([int wordLength][word][int definitionLength][definition]
+                   [long version])* and a wordLength of -1 at the end.
+   Logs and snapshots written before entries had versions still load; their words get version 1. */
+
+public class WriteAheadLog implements Closeable {
+    public enum SyncMode { BATCH, OP }
+
+    private static final int SNAPSHOT_MAGIC = 0x43484f56;  // "CHOV"
+    private static final int UNVERSIONED_SNAPSHOT_MAGIC = 0x43484f52;  // "CHOR"
+    private static final long UNVERSIONED = 1;
+    private static final byte OP_PUT = 1;  // Only replayed, no longer written
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_PUT_VERSIONED = 3;
+    private static final byte OP_CLOSE = 0;
+    private static final int MAX_BATCH = 4096;
+
+    private final Path directory;
+    private final SyncMode syncMode;
+    private final long snapshotEvery;
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile ShardStore state;
+    private volatile boolean running = true;
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();  // Appends share it, close takes it alone
+    private FileChannel segment;
+    private long segmentSeq;
+    private long recordsSinceSnapshot;
+    private Thread snapshotter;
+
+    private static class Record {
+        final byte op;
+        final String word;
+        final String definition;
+        final long version;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        Record(byte op, String word, String definition, long version) {
+            this.op = op;
+            this.word = word;
+            this.definition = definition;
+            this.version = version;
+        }
+    }
+
+    public WriteAheadLog(Path directory, SyncMode syncMode, long snapshotEvery) throws IOException {
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.snapshotEvery = snapshotEvery;
+        Files.createDirectories(directory);
+        this.writer = new Thread(this::writeLoop, "wal-writer-" + directory.getFileName());
+        this.writer.setDaemon(true);
+    }
+
+    // Loads the snapshot and replays later segments into state, then starts logging on a fresh segment
+    public long recover(ShardStore state) throws IOException {
+        this.state = state;
+        long firstSegment = 0;
+        Path snapshot = directory.resolve("snapshot.dat");
+        if (Files.exists(snapshot)) {
+            firstSegment = loadSnapshot(snapshot, state);
+        }
+        long lastSegment = firstSegment - 1;
+        for (Map.Entry<Long, Path> entry : segments().entrySet()) {
+            if (entry.getKey() >= firstSegment) {
+                replaySegment(entry.getValue(), state);
+                lastSegment = Math.max(lastSegment, entry.getKey());
+            }
+        }
+        openSegment(lastSegment + 1);
+        writer.start();
+        return state.size();
+    }
+
+    public CompletableFuture<Void> appendPut(String word, String definition, long version) {
+        return enqueue(new Record(OP_PUT_VERSIONED, word, definition, version));
+    }
+
+    public CompletableFuture<Void> appendRemove(String word) {
+        return enqueue(new Record(OP_REMOVE, word, null, 0));
+    }
+
+    // Nothing is queued behind the close marker: close waits for appends in progress, and later ones are refused
+    private CompletableFuture<Void> enqueue(Record record) {
+        closeLock.readLock().lock();
+        try {
+            if (!running) {
+                record.durable.completeExceptionally(new IOException("Write-ahead log is closed"));
+            } else {
+                queue.add(record);
+            }
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return record.durable;
+    }
+
+    private void writeLoop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);  // Group commit: everything that queued up meanwhile
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    if (batch.get(i).op == OP_CLOSE) {  // Never written; the rest of the batch still is
+                        closing = true;
+                        batch.remove(i).durable.complete(null);
+                    }
+                }
+                for (Record record : batch) {
+                    buffer = encode(record, buffer);
+                    if (syncMode == SyncMode.OP) {
+                        writeAndSync(buffer);
+                    }
+                }
+                if (syncMode == SyncMode.BATCH) {
+                    writeAndSync(buffer);
+                }
+                for (Record record : batch) {
+                    record.durable.complete(null);
+                }
+                recordsSinceSnapshot += batch.size();
+                if (recordsSinceSnapshot >= snapshotEvery && (snapshotter == null || !snapshotter.isAlive())) {
+                    startSnapshot();
+                }
+            } catch (InterruptedException e) {
+                closing = true;
+            } catch (IOException e) {
+                for (Record record : batch) {
+                    record.durable.completeExceptionally(e);
+                }
+                buffer.clear();
+            }
+            batch.clear();
+        }
+    }
+
+    private ByteBuffer encode(Record record, ByteBuffer buffer) {
+        byte[] word = record.word.getBytes(StandardCharsets.UTF_8);
+        byte[] definition = record.definition == null ? null : record.definition.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 1 + 4 + word.length + 4 + (definition == null ? 0 : definition.length)
+                + (record.op == OP_PUT_VERSIONED ? 8 : 0);
+        if (buffer.remaining() < 8 + bodyLength) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + 8 + bodyLength));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.put(record.op).putInt(word.length).put(word).putInt(definition == null ? -1 : definition.length);
+        if (definition != null) {
+            body.put(definition);
+        }
+        if (record.op == OP_PUT_VERSIONED) {
+            body.putLong(record.version);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        buffer.putInt(bodyLength).putInt((int) crc.getValue()).put(body.array());
+        return buffer;
+    }
+
+    private void writeAndSync(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        buffer.clear();
+        segment.force(false);
+    }
+
+    // Runs on the writer thread between batches, so every record lands either before or after the roll
+    private void startSnapshot() throws IOException {
+        long covered = segmentSeq + 1;
+        segment.close();
+        openSegment(covered);
+        recordsSinceSnapshot = 0;
+        snapshotter = new Thread(() -> {
+            try {
+                writeSnapshot(covered);
+            } catch (IOException e) {
+                System.err.println("Snapshot in " + directory + " failed: " + e.getMessage());
+            }
+        }, "wal-snapshot-" + directory.getFileName());
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    // Records are applied to the store before they are logged, so everything in segments before firstSegment is
+    // already visible here; anything newer that sneaks in is replayed again from its segment, which is harmless
+    private void writeSnapshot(long firstSegment) throws IOException {
+        Path tmp = directory.resolve("snapshot.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(firstSegment);
+            IOException[] failure = new IOException[1];
+            state.forEachInRange(0, 0, (word, keyHash, definition, version) -> {  // (0, 0] is the whole ring
+                try {
+                    if (failure[0] == null) {
+                        writeBytes(out, word.getBytes(StandardCharsets.UTF_8));
+                        writeBytes(out, definition == null ? null : definition.getBytes(StandardCharsets.UTF_8));
+                        out.writeLong(version);
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.writeInt(-1);
+        }
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve("snapshot.dat"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (Map.Entry<Long, Path> entry : segments().entrySet()) {
+            if (entry.getKey() < firstSegment) {
+                Files.deleteIfExists(entry.getValue());
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private long loadSnapshot(Path snapshot, ShardStore state) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() <= Integer.MAX_VALUE) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                boolean versioned = isVersioned(mapped.getInt(), snapshot);
+                long firstSegment = mapped.getLong();
+                int wordLength;
+                while ((wordLength = mapped.getInt()) >= 0) {
+                    String word = decode(mapped, wordLength);
+                    String definition = decode(mapped, mapped.getInt());
+                    state.put(word, FNV1aHash.hash32(word), definition, versioned ? mapped.getLong() : UNVERSIONED, null);
+                }
+                return firstSegment;
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+            boolean versioned = isVersioned(in.readInt(), snapshot);
+            long firstSegment = in.readLong();
+            int wordLength;
+            while ((wordLength = in.readInt()) >= 0) {
+                String word = readString(in, wordLength);
+                String definition = readString(in, in.readInt());
+                state.put(word, FNV1aHash.hash32(word), definition, versioned ? in.readLong() : UNVERSIONED, null);
+            }
+            return firstSegment;
+        }
+    }
+
+    private static boolean isVersioned(int magic, Path snapshot) throws IOException {
+        if (magic != SNAPSHOT_MAGIC && magic != UNVERSIONED_SNAPSHOT_MAGIC) {
+            throw new IOException("Not a snapshot: " + snapshot);
+        }
+        return magic == SNAPSHOT_MAGIC;
+    }
+
+    private static String decode(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(DataInputStream in, int length) throws IOException {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Stops at the first torn or corrupt record, which can only be the tail of the last segment written
+    private void replaySegment(Path path, ShardStore state) throws IOException {
+        try (InputStream file = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            while (true) {
+                byte[] body;
+                int crc;
+                try {
+                    body = new byte[in.readInt()];
+                    crc = in.readInt();
+                    in.readFully(body);
+                } catch (EOFException | NegativeArraySizeException e) {
+                    return;
+                }
+                CRC32 check = new CRC32();
+                check.update(body);
+                if ((int) check.getValue() != crc) {
+                    System.err.println("Corrupt record in " + path + ", ignoring the rest of the segment");
+                    return;
+                }
+                ByteBuffer record = ByteBuffer.wrap(body);
+                byte op = record.get();
+                String word = decode(record, record.getInt());
+                if (op == OP_PUT || op == OP_PUT_VERSIONED) {
+                    String definition = decode(record, record.getInt());
+                    state.put(word, FNV1aHash.hash32(word), definition, op == OP_PUT ? UNVERSIONED : record.getLong(), null);
+                } else {
+                    state.remove(word, FNV1aHash.hash32(word), null);
+                }
+            }
+        }
+    }
+
+    private void openSegment(long seq) throws IOException {
+        segmentSeq = seq;
+        segment = FileChannel.open(directory.resolve("wal-" + seq + ".log"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private TreeMap<Long, Path> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "wal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(4, name.length() - 4)), file);
+            }
+        }
+        return segments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeLock.writeLock().lock();
+        try {
+            running = false;
+            queue.add(new Record(OP_CLOSE, "", null, 0));  // Everything queued before close is still written
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            writer.join();
+            if (snapshotter != null) {
+                snapshotter.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Record late : queue) {
+            late.durable.completeExceptionally(new IOException("Write-ahead log is closed"));
+        }
+        segment.close();
+    }
+}
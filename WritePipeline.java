@@ -0,0 +1,136 @@
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/* Owner-side write coalescing. Concurrent setDictionary calls queue their write and wait; one flusher thread
+   drains what has queued, up to maxBatch words, and hands it to the node as one HashedEntries batch: one pass
+   over the store, one log group commit, one invalidation round and one storeReplicas call per replica.
+   While a batch is being applied the next one fills up, so batches grow with the load by themselves. A write
+   that finds nobody else queued is applied at once; only when writes arrive together does the flusher wait,
+   at most maxDelayMicros after the first one, for more to join the batch. */
+
+public class WritePipeline {
+    public interface BatchSink {
+        void apply(HashedEntries batch) throws RemoteException;
+    }
+
+    private static class PendingWrite {
+        final String word;
+        final int keyHash;
+        final String definition;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingWrite(String word, int keyHash, String definition) {
+            this.word = word;
+            this.keyHash = keyHash;
+            this.definition = definition;
+        }
+    }
+
+    private static final PendingWrite CLOSE = new PendingWrite("", 0, null);
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final BatchSink sink;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Thread flusher;
+    private volatile boolean running = true;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    public WritePipeline(String name, BatchSink sink, int maxBatch, long maxDelayMicros) {
+        this.sink = sink;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.flusher = new Thread(this::flushLoop, "write-pipeline-" + name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Completes once the write's batch is applied, logged and replicated, or with the batch's failure
+    public CompletableFuture<Void> submit(String word, int keyHash, String definition) {
+        PendingWrite write = new PendingWrite(word, keyHash, definition);
+        if (!running) {
+            write.done.completeExceptionally(new RemoteException("Write pipeline is closed"));
+        } else {
+            queue.add(write);
+        }
+        return write.done;
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(maxBatch);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, maxBatch - 1);
+                if (batch.size() > 1 && maxDelayNanos > 0) {  // Writes are arriving together, give others a moment
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    long wait;
+                    while (batch.size() < maxBatch && (wait = deadline - System.nanoTime()) > 0) {
+                        PendingWrite next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, maxBatch - batch.size());
+                    }
+                }
+            } catch (InterruptedException e) {
+                closing = true;
+            }
+            closing |= batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                apply(batch);
+            }
+            batch.clear();
+        }
+        for (PendingWrite late : queue) {
+            late.done.completeExceptionally(new RemoteException("Write pipeline is closed"));
+        }
+    }
+
+    private void apply(List<PendingWrite> batch) {
+        HashedEntries entries = new HashedEntries(batch.size());
+        for (PendingWrite write : batch) {
+            entries.add(write.word, write.keyHash, write.definition);  // Queue order, so a later write to a word wins
+        }
+        try {
+            sink.apply(entries);
+            for (PendingWrite write : batch) {
+                write.done.complete(null);
+            }
+        } catch (RemoteException | RuntimeException e) {
+            for (PendingWrite write : batch) {
+                write.done.completeExceptionally(e);
+            }
+        }
+        batches.increment();
+        writes.add(batch.size());
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    // Writes already queued are still applied
+    public void close() {
+        running = false;
+        queue.add(CLOSE);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
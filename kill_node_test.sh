@@ -0,0 +1,44 @@
+#!/bin/bash
+
+# Starts a replicated ring over NIO (node i on port 5000 + i), runs AvailabilityProbe against it and
+# stops one node halfway through the run: crash kills it with SIGKILL, leave sends SIGTERM so it hands its
+# words to its successor first.
+# Usage: ./kill_node_test.sh [nodes] [replicas] [one|quorum|all] [node to kill] [seconds] [crash|leave]
+
+NODES=${1:-5}
+REPLICAS=${2:-3}
+CONSISTENCY=${3:-one}
+VICTIM=${4:-0}
+RUN_SECONDS=${5:-20}
+MODE=${6:-crash}
+BASE_PORT=5000
+PIDS=()
+
+cleanup() {
+  kill "${PIDS[@]}" 2>/dev/null
+}
+trap cleanup EXIT
+
+for ((i = 0; i < NODES; i++))
+do
+  java -cp . Main $i $((BASE_PORT + i)) --transport=nio --replicas=$REPLICAS > /dev/null 2>&1 &
+  PIDS+=($!)
+  echo "Node$i is starting and joining the ring..."
+  if [ $i -eq 0 ]; then sleep 5; else sleep 2; fi
+done
+
+# Read through a node that survives the kill
+ENTRY=$(( (VICTIM + 1) % NODES ))
+java -cp . AvailabilityProbe nio://localhost:$((BASE_PORT + ENTRY)) $REPLICAS $CONSISTENCY $RUN_SECONDS &
+PROBE=$!
+
+sleep $((RUN_SECONDS / 2 + 3))  # The probe loads its words before the clock starts
+if [ "$MODE" = "leave" ]; then
+  echo "Node$VICTIM is leaving"
+  kill "${PIDS[$VICTIM]}"
+else
+  echo "Killing Node$VICTIM"
+  kill -9 "${PIDS[$VICTIM]}"
+fi
+
+wait $PROBE
@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# Same ring as start_chord.sh but over the NIO transport: node i listens on port 5000 + i
+
+BASE_PORT=5000
+
+for i in {0..7}
+do
+  PID=$(lsof -ti:$((BASE_PORT + i)))
+  if [ ! -z "$PID" ]; then
+      echo "Port $((BASE_PORT + i)) is already in use. Killing existing process..."
+      kill -9 $PID
+  fi
+done
+
+# Start Node0
+java -cp . Main 0 $BASE_PORT --transport=nio &
+sleep 5  # Wait for Node0 to initialize
+
+# Start subsequent nodes
+for i in {1..7}
+do
+  java -cp . Main $i $((BASE_PORT + i)) --transport=nio &
+  echo "Node$i is starting and joining the ring..."
+  sleep 2  # Ensures each node has time to initialize and join
+done
+
+echo "All nodes have been initialized."